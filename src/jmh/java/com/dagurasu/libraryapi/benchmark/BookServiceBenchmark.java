@@ -0,0 +1,96 @@
+package com.dagurasu.libraryapi.benchmark;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.repository.BookRepository;
+import com.dagurasu.libraryapi.api.service.BookService;
+import com.dagurasu.libraryapi.api.service.count.SearchCounts;
+import com.dagurasu.libraryapi.api.service.imp.BookServiceImpl;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class BookServiceBenchmark {
+
+	private final AtomicLong sequence = new AtomicLong(1_000_000_000L);
+
+	private BookService service;
+	private BookService databaseService;
+	private long deepId;
+	private int books;
+
+	@Setup
+	public void setup(LibraryState state) {
+		service = state.getBean(BookService.class);
+		databaseService = new BookServiceImpl(state.getBean(BookRepository.class), state.getBean(SearchCounts.class));
+		deepId = state.books - 1_000;
+		books = state.books;
+	}
+
+	@Benchmark
+	public Page<Book> findByTitle() {
+		return service.find(Book.builder().title("title 4242").build(), PageRequest.of(0, 20));
+	}
+
+	/* a mesma busca sem o count, e com o total do cache de SearchCounts */
+	@Benchmark
+	public Slice<Book> findByTitleDatabaseSlice() {
+		return databaseService.findSlice(Book.builder().title("title 4242").build(), PageRequest.of(0, 20));
+	}
+
+	@Benchmark
+	public Page<Book> findByTitleDatabaseApproximate() {
+		return databaseService.findApproximate(Book.builder().title("title 4242").build(), PageRequest.of(0, 20));
+	}
+
+	@Benchmark
+	public Page<Book> findByAuthorDeepPage() {
+		return service.find(Book.builder().author("author 12").build(), PageRequest.of(50, 20));
+	}
+
+	/*
+	 * O filtro casa com todos os livros, obrigando o banco a avaliá-lo em cada
+	 * linha pulada pelo offset (o H2 pula linhas sem filtro em O(log n)).
+	 */
+	@Benchmark
+	public Page<Book> findDeepOffsetPage() {
+		return service.find(Book.builder().title("title").build(), PageRequest.of((int) (deepId / 20), 20));
+	}
+
+	@Benchmark
+	public Slice<Book> findDeepKeysetPage() {
+		return service.findAfter(Book.builder().title("title").build(), deepId, 20);
+	}
+
+	@Benchmark
+	public Optional<Book> getBookByIsbn() {
+		return service.getBookByIsbn(LibraryState.isbn(1 + ThreadLocalRandom.current().nextInt(books)));
+	}
+
+	@Benchmark
+	public Book save() {
+		long id = sequence.incrementAndGet();
+		return service.save(Book.builder().title("Title " + id).author("Author").isbn(LibraryState.isbn(id)).build());
+	}
+}
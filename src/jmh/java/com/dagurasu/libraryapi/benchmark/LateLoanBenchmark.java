@@ -0,0 +1,62 @@
+package com.dagurasu.libraryapi.benchmark;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.dagurasu.libraryapi.api.model.projection.LateLoanView;
+import com.dagurasu.libraryapi.api.service.LoanPartition;
+import com.dagurasu.libraryapi.api.service.LoanService;
+
+/**
+ * Busca de atrasados sobre o histórico de {@link LoanHistoryState}: o bloco
+ * usado pelo envio agendado, que lê só a janela de um dia desde a marca
+ * d'água pelo índice (status, due_date), contra o filtro antigo por loan_date
+ * e returned anulável, que varre a tabela inteira.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class LateLoanBenchmark {
+
+	private static final int CHUNK_SIZE = 500;
+
+	private LoanService service;
+	private JdbcTemplate jdbc;
+	private LocalDate today;
+
+	@Setup
+	public void setup(LoanHistoryState state) {
+		service = state.getBean(LoanService.class);
+		jdbc = state.getBean(JdbcTemplate.class);
+		today = LocalDate.now();
+	}
+
+	@Benchmark
+	public List<LateLoanView> newlyLateLoansByStatusAndDueDate() {
+		return service.getNewlyLateLoansAfter(today.minusDays(1), today, LoanPartition.ALL, 0L, CHUNK_SIZE);
+	}
+
+	@Benchmark
+	public List<Long> lateLoansByLoanDate() {
+		return jdbc.queryForList("select id from loan where id > 0 and loan_date <= ? "
+				+ "and ( returned is null or returned = false ) order by id limit ?", Long.class,
+				Date.valueOf(today.minusDays(4)), CHUNK_SIZE);
+	}
+}
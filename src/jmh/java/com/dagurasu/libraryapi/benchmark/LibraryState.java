@@ -0,0 +1,99 @@
+package com.dagurasu.libraryapi.benchmark;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.dagurasu.libraryapi.LibraryApiApplication;
+
+/**
+ * Sobe a aplicação sem camada web sobre um H2 embarcado e popula livros e
+ * empréstimos para que os benchmarks rodem contra volumes realistas.
+ */
+@State(Scope.Benchmark)
+public class LibraryState {
+
+	private static final int BATCH_SIZE = 1_000;
+
+	@Param("100000")
+	public int books;
+
+	@Param("200000")
+	public int loans;
+
+	public ConfigurableApplicationContext context;
+
+	@Setup(Level.Trial)
+	public void start() {
+		context = startApplication("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+		seed(context.getBean(JdbcTemplate.class));
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() {
+		context.close();
+	}
+
+	public <T> T getBean(Class<T> type) {
+		return context.getBean(type);
+	}
+
+	static ConfigurableApplicationContext startApplication(String url) {
+		return new SpringApplicationBuilder(LibraryApiApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties(
+						"spring.datasource.url=" + url,
+						"spring.main.banner-mode=off",
+						"spring.boot.admin.client.enabled=false",
+						"logging.level.root=WARN",
+						"logging.file.name=")
+				.run();
+	}
+
+	public static String isbn(long i) {
+		return String.format("978%010d", i);
+	}
+
+	public static String customer(long i) {
+		return "customer-" + i;
+	}
+
+	private void seed(JdbcTemplate jdbc) {
+		List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+		for (int i = 1; i <= books; i++) {
+			batch.add(new Object[] { "Title " + i, "Author " + (i % 5_000), isbn(i) });
+			if (batch.size() == BATCH_SIZE || i == books) {
+				jdbc.batchUpdate("insert into book (title, author, isbn, version) values (?, ?, ?, 0)", batch);
+				batch.clear();
+			}
+		}
+
+		Random random = new Random(42);
+		LocalDate today = LocalDate.now();
+		for (int i = 1; i <= loans; i++) {
+			long book = 1 + random.nextInt(books);
+			int customer = random.nextInt(Math.max(1, loans / 10));
+			LocalDate loanDate = today.minusDays(random.nextInt(3_650));
+			batch.add(new Object[] { customer(customer), customer(customer) + "@mail.com", book,
+					Date.valueOf(loanDate), Date.valueOf(loanDate.plusDays(3)), Boolean.TRUE });
+			if (batch.size() == BATCH_SIZE || i == loans) {
+				jdbc.batchUpdate("insert into loan (customer, customer_email, id_book, loan_date, due_date, returned, "
+						+ "status, version) values (?, ?, ?, ?, ?, ?, 'RETURNED', 0)", batch);
+				batch.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.dagurasu.libraryapi.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Histórico grande de empréstimos (10 milhões de linhas por padrão), quase
+ * todos devolvidos, com uma pequena fração aberta e parte dela vencida. O
+ * volume é gerado pelo próprio H2 com SYSTEM_RANGE, sem trafegar linha a
+ * linha pelo JDBC.
+ */
+@State(Scope.Benchmark)
+public class LoanHistoryState {
+
+	private static final int LOAN_DAYS = 3;
+
+	@Param("10000000")
+	public int loans;
+
+	@Param("50000")
+	public int openLoans;
+
+	public ConfigurableApplicationContext context;
+
+	@Setup(Level.Trial)
+	public void start() {
+		context = LibraryState.startApplication("jdbc:h2:mem:history;DB_CLOSE_DELAY=-1");
+		seed(context.getBean(JdbcTemplate.class));
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() {
+		context.close();
+	}
+
+	public <T> T getBean(Class<T> type) {
+		return context.getBean(type);
+	}
+
+	/*
+	 * Cada empréstimo aberto ocupa um livro distinto (restrição de open_book_id);
+	 * os abertos têm até 30 dias, então cerca de 90% deles estão atrasados.
+	 */
+	private void seed(JdbcTemplate jdbc) {
+		jdbc.update("insert into book (title, author, isbn, version) "
+				+ "select concat('Title ', x), concat('Author ', mod(x, 5000)), concat('978', lpad(x, 10, '0')), 0 "
+				+ "from system_range(1, ?)", openLoans);
+
+		jdbc.update("insert into loan (customer, customer_email, id_book, loan_date, due_date, returned, status, version) "
+				+ "select concat('customer-', mod(x, 100000)), concat('customer-', mod(x, 100000), '@mail.com'), "
+				+ "mod(x, ?) + 1, dateadd('DAY', -mod(x, 3650), current_date), "
+				+ "dateadd('DAY', ? - mod(x, 3650), current_date), true, 'RETURNED', 0 "
+				+ "from system_range(1, ?)", openLoans, LOAN_DAYS, loans - openLoans);
+
+		jdbc.update("insert into loan (customer, customer_email, id_book, loan_date, due_date, returned, status, "
+				+ "open_book_id, version) "
+				+ "select concat('customer-', x), concat('customer-', x, '@mail.com'), x, "
+				+ "dateadd('DAY', -mod(x, 30), current_date), dateadd('DAY', ? - mod(x, 30), current_date), "
+				+ "false, 'OPEN', x, 0 from system_range(1, ?)", LOAN_DAYS, openLoans);
+
+		jdbc.execute("analyze");
+	}
+}
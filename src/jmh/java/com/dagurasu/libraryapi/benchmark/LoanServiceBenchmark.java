@@ -0,0 +1,85 @@
+package com.dagurasu.libraryapi.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import com.dagurasu.libraryapi.api.dto.LoanFilterDTO;
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
+import com.dagurasu.libraryapi.api.service.BookService;
+import com.dagurasu.libraryapi.api.service.LoanService;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class LoanServiceBenchmark {
+
+	private LoanService service;
+	private BookService bookService;
+	private int books;
+	private int customers;
+
+	@Setup
+	public void setup(LibraryState state) {
+		service = state.getBean(LoanService.class);
+		bookService = state.getBean(BookService.class);
+		books = state.books;
+		customers = Math.max(1, state.loans / 10);
+	}
+
+	/*
+	 * O empréstimo é gravado já devolvido para que o mesmo livro possa ser
+	 * emprestado novamente na próxima invocação: o caminho medido continua sendo
+	 * a verificação de empréstimo aberto seguida do insert.
+	 */
+	@Benchmark
+	public Loan save() {
+		long id = 1 + ThreadLocalRandom.current().nextInt(books);
+		Book book = Book.builder().id(id).build();
+		return service.save(Loan.builder().book(book).customer("benchmark").customerEmail("benchmark@mail.com")
+				.loanDate(LocalDate.now()).returned(true).build());
+	}
+
+	/*
+	 * Mesma operação com quatro threads: livros diferentes caem em locks
+	 * diferentes e não devem serializar entre si.
+	 */
+	@Benchmark
+	@Threads(4)
+	public Loan saveParallel() {
+		return save();
+	}
+
+	@Benchmark
+	public Page<LoanView> findByIsbnOrCustomer() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		LoanFilterDTO filter = LoanFilterDTO.builder().isbn(LibraryState.isbn(1 + random.nextInt(books)))
+				.customer(LibraryState.customer(random.nextInt(customers))).build();
+		return service.find(filter, PageRequest.of(0, 20));
+	}
+
+	@Benchmark
+	public Page<LoanView> loansByBook() {
+		long id = 1 + ThreadLocalRandom.current().nextInt(books);
+		return service.getLoansByBook(bookService.getById(id).get(), PageRequest.of(0, 20));
+	}
+}
@@ -0,0 +1,98 @@
+package com.dagurasu.libraryapi.benchmark;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.dagurasu.libraryapi.api.dto.LoanDTO;
+import com.dagurasu.libraryapi.api.mapper.BookMapper;
+import com.dagurasu.libraryapi.api.mapper.LoanMapper;
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+
+/**
+ * Custo por linha das conversões entidade → DTO feitas por BookController e
+ * LoanController em uma página de resultados. O ModelMapper é mantido como
+ * linha de base para os mappers especializados.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+	private static final int PAGE_SIZE = 100;
+
+	private final List<Book> books = new ArrayList<>(PAGE_SIZE);
+	private final List<Loan> loans = new ArrayList<>(PAGE_SIZE);
+
+	private ModelMapper modelMapper;
+	private BookMapper bookMapper;
+	private LoanMapper loanMapper;
+
+	@Setup
+	public void setup() {
+		modelMapper = new ModelMapper();
+		bookMapper = new BookMapper();
+		loanMapper = new LoanMapper(bookMapper);
+		for (long i = 0; i < PAGE_SIZE; i++) {
+			Book book = Book.builder().id(i).title("Title " + i).author("Author " + i).isbn(LibraryState.isbn(i)).build();
+			books.add(book);
+			loans.add(Loan.builder().id(i).customer(LibraryState.customer(i)).customerEmail("c@mail.com").book(book)
+					.loanDate(LocalDate.now()).returned(false).build());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PAGE_SIZE)
+	public void modelMapperBookPage(Blackhole blackhole) {
+		for (Book book : books) {
+			blackhole.consume(modelMapper.map(book, BookDTO.class));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PAGE_SIZE)
+	public void modelMapperLoanPage(Blackhole blackhole) {
+		for (Loan loan : loans) {
+			BookDTO bookDTO = modelMapper.map(loan.getBook(), BookDTO.class);
+			LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
+			loanDTO.setBook(bookDTO);
+			blackhole.consume(loanDTO);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PAGE_SIZE)
+	public void mapperBookPage(Blackhole blackhole) {
+		for (Book book : books) {
+			blackhole.consume(bookMapper.toDTO(book));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PAGE_SIZE)
+	public void mapperLoanPage(Blackhole blackhole) {
+		for (Loan loan : loans) {
+			blackhole.consume(loanMapper.toDTO(loan));
+		}
+	}
+}
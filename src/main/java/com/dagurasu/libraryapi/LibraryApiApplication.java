@@ -1,18 +1,27 @@
 package com.dagurasu.libraryapi;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import com.dagurasu.libraryapi.api.mapper.BookMapper;
+import com.dagurasu.libraryapi.api.mapper.LoanMapper;
+
+@EnableCaching
 @EnableScheduling
 @SpringBootApplication
 public class LibraryApiApplication {
 
 	@Bean
-	public ModelMapper modelMapper() {
-		return new ModelMapper();
+	public BookMapper bookMapper() {
+		return new BookMapper();
+	}
+
+	@Bean
+	public LoanMapper loanMapper(BookMapper bookMapper) {
+		return new LoanMapper(bookMapper);
 	}
 	
 	public static void main(String[] args) {
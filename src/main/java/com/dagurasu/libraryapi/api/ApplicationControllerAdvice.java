@@ -1,5 +1,6 @@
 package com.dagurasu.libraryapi.api;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -35,4 +36,16 @@ public class ApplicationControllerAdvice {
 		return new ResponseEntity(new ApiErrors(ex), ex.getStatus());
 	}
 
+	/*
+	 * Outra requisição alterou o registro entre a leitura e a escrita: a
+	 * versão não bate mais e o cliente precisa reler o recurso.
+	 */
+	@SuppressWarnings("rawtypes")
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	public ResponseEntity handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+
+		return handleResdponseStatusException(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+				"Resource was modified by another request"));
+	}
+
 }
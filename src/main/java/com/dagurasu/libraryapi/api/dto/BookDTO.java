@@ -1,6 +1,7 @@
 package com.dagurasu.libraryapi.api.dto;
 
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,12 +16,15 @@ public class BookDTO {
 	private Long id;
 
 	@NotEmpty
+	@Size(max = 255)
 	private String title;
 
 	@NotEmpty
+	@Size(max = 255)
 	private String author;
 
 	@NotEmpty
+	@Size(max = 255)
 	private String isbn;
 
 }
@@ -0,0 +1,15 @@
+package com.dagurasu.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportErrorDTO {
+
+	private long line;
+	private String isbn;
+	private String message;
+}
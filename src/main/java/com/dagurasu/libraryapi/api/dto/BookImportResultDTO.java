@@ -0,0 +1,21 @@
+package com.dagurasu.libraryapi.api.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportResultDTO {
+
+	private long read;
+	private long imported;
+	private long rejected;
+	private boolean errorsTruncated;
+	private List<BookImportErrorDTO> errors;
+}
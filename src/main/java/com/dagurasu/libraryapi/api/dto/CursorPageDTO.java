@@ -0,0 +1,20 @@
+package com.dagurasu.libraryapi.api.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageDTO<T> {
+
+	private List<T> content;
+	private int size;
+	private boolean hasNext;
+	private String next;
+}
@@ -0,0 +1,27 @@
+package com.dagurasu.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de um item de uma operação em lote: o id do empréstimo quando deu
+ * certo, ou o erro que impediu aquele item.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanBatchItemDTO {
+
+	private int index;
+	private Long id;
+	private String error;
+
+	public static LoanBatchItemDTO ok(int index, Long id) {
+		return new LoanBatchItemDTO(index, id, null);
+	}
+
+	public static LoanBatchItemDTO failed(int index, Long id, String error) {
+		return new LoanBatchItemDTO(index, id, error);
+	}
+}
@@ -0,0 +1,40 @@
+package com.dagurasu.libraryapi.api.mapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.dagurasu.libraryapi.api.model.entity.Book;
+
+/**
+ * Conversão direta entre Book e BookDTO, sem reflexão.
+ */
+public class BookMapper {
+
+	public BookDTO toDTO(Book book) {
+		if (book == null) {
+			return null;
+		}
+		return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn());
+	}
+
+	public Book toEntity(BookDTO dto) {
+		if (dto == null) {
+			return null;
+		}
+		Book book = new Book();
+		book.setId(dto.getId());
+		book.setTitle(dto.getTitle());
+		book.setAuthor(dto.getAuthor());
+		book.setIsbn(dto.getIsbn());
+		return book;
+	}
+
+	public List<BookDTO> toDTOs(List<Book> books) {
+		List<BookDTO> list = new ArrayList<>(books.size());
+		for (Book book : books) {
+			list.add(toDTO(book));
+		}
+		return list;
+	}
+}
@@ -0,0 +1,62 @@
+package com.dagurasu.libraryapi.api.mapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.dagurasu.libraryapi.api.dto.LoanDTO;
+import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
+
+/**
+ * Conversão direta de Loan para LoanDTO, incluindo o livro, em uma única
+ * passada por linha.
+ */
+public class LoanMapper {
+
+	private final BookMapper bookMapper;
+
+	public LoanMapper(BookMapper bookMapper) {
+		this.bookMapper = bookMapper;
+	}
+
+	public LoanDTO toDTO(Loan loan) {
+		if (loan == null) {
+			return null;
+		}
+		LoanDTO dto = new LoanDTO();
+		dto.setId(loan.getId());
+		dto.setCustomer(loan.getCustomer());
+		dto.setEmail(loan.getCustomerEmail());
+		dto.setBook(bookMapper.toDTO(loan.getBook()));
+		return dto;
+	}
+
+	public LoanDTO toDTO(LoanView view) {
+		if (view == null) {
+			return null;
+		}
+		LoanDTO dto = new LoanDTO();
+		dto.setId(view.getId());
+		dto.setCustomer(view.getCustomer());
+		dto.setEmail(view.getCustomerEmail());
+		dto.setBook(new BookDTO(view.getBookId(), view.getBookTitle(), view.getBookAuthor(), view.getBookIsbn()));
+		return dto;
+	}
+
+	public List<LoanDTO> toDTOs(List<Loan> loans) {
+		List<LoanDTO> list = new ArrayList<>(loans.size());
+		for (Loan loan : loans) {
+			list.add(toDTO(loan));
+		}
+		return list;
+	}
+
+	public List<LoanDTO> viewsToDTOs(List<LoanView> views) {
+		List<LoanDTO> list = new ArrayList<>(views.size());
+		for (LoanView view : views) {
+			list.add(toDTO(view));
+		}
+		return list;
+	}
+}
@@ -9,6 +9,8 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,11 +18,11 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_book_isbn", columnNames = "isbn"))
 public class Book {
 
 	@Id
@@ -36,6 +38,13 @@ public class Book {
 	@Column
 	private String isbn;
 
+	/*
+	 * Incrementado a cada alteração; vira o ETag do recurso e impede que uma
+	 * escrita concorrente sobrescreva outra.
+	 */
+	@Version
+	private Long version;
+
 	@OneToMany(mappedBy = "book")
 	private List<Loan> loans;
 }
@@ -0,0 +1,39 @@
+package com.dagurasu.libraryapi.api.model.entity;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * Posse temporária de um job entre as réplicas. Vale até expiresAt; o dono
+ * renova enquanto trabalha e, se parar, outra réplica assume após a expiração.
+ */
+@Data
+@Builder
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "job_lease")
+public class JobLease {
+
+	@Id
+	@Column(length = 50)
+	private String name;
+
+	@Column(length = 100, nullable = false)
+	private String owner;
+
+	@Column(nullable = false)
+	private LocalDateTime expiresAt;
+
+	@Column
+	private LocalDateTime acquiredAt;
+}
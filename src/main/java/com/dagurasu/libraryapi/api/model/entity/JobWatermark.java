@@ -0,0 +1,37 @@
+package com.dagurasu.libraryapi.api.model.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * Até onde um job periódico já processou, gravado ao fim de cada execução
+ * completa para que a próxima continue dali em vez de recomeçar do zero.
+ */
+@Data
+@Builder
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "job_watermark")
+public class JobWatermark {
+
+	@Id
+	@Column(length = 50)
+	private String name;
+
+	@Column(nullable = false)
+	private LocalDate watermark;
+
+	@Column
+	private LocalDateTime updatedAt;
+}
@@ -4,11 +4,18 @@ import java.time.LocalDate;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -20,6 +27,11 @@ import lombok.NoArgsConstructor;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(indexes = { @Index(name = "idx_loan_status_due_date", columnList = "status, due_date"),
+		@Index(name = "idx_loan_status_late_notified_on", columnList = "status, late_notified_on"),
+		@Index(name = "idx_loan_book_status", columnList = "id_book, status"),
+		@Index(name = "idx_loan_customer", columnList = "customer"),
+		@Index(name = "idx_loan_status_loan_date", columnList = "status, loanDate") })
 public class Loan {
 
 	@Id
@@ -41,4 +53,39 @@ public class Loan {
 	
 	@Column
 	private Boolean returned;
+	
+	@Column(name = "due_date")
+	private LocalDate dueDate;
+	
+	/*
+	 * Espelha o returned em uma coluna não nula: com o índice (status, due_date)
+	 * a busca de atrasados percorre só os empréstimos abertos já vencidos.
+	 */
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false, length = 10)
+	private LoanStatus status;
+	
+	/*
+	 * Data do último aviso de atraso; nulo enquanto o cliente não foi avisado.
+	 */
+	@Column(name = "late_notified_on")
+	private LocalDate lateNotifiedOn;
+	
+	/*
+	 * Id do livro enquanto o empréstimo está aberto e nulo depois da devolução.
+	 * A restrição única garante no banco um único empréstimo aberto por livro.
+	 */
+	@Column(name = "open_book_id", unique = true)
+	private Long openBookId;
+	
+	@Version
+	private Long version;
+	
+	@PrePersist
+	@PreUpdate
+	void syncStatus() {
+		boolean open = !Boolean.TRUE.equals(returned);
+		status = open ? LoanStatus.OPEN : LoanStatus.RETURNED;
+		openBookId = book != null && open ? book.getId() : null;
+	}
 }
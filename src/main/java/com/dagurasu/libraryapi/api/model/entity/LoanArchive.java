@@ -0,0 +1,54 @@
+package com.dagurasu.libraryapi.api.model.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * Empréstimos devolvidos há mais tempo que a retenção, movidos para fora da
+ * tabela loan pelo LoanArchiver. O id é o mesmo do empréstimo original, então
+ * cursores e links continuam valendo depois do arquivamento.
+ */
+@Data
+@Builder
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "loan_archive", indexes = { @Index(name = "idx_loan_archive_customer", columnList = "customer"),
+		@Index(name = "idx_loan_archive_book", columnList = "id_book") })
+public class LoanArchive {
+
+	@Id
+	private Long id;
+
+	@Column(length = 100)
+	private String customer;
+
+	@Column(name = "customer_email")
+	private String customerEmail;
+
+	@ManyToOne
+	@JoinColumn(name = "id_book")
+	private Book book;
+
+	@Column
+	private LocalDate loanDate;
+
+	@Column(name = "due_date")
+	private LocalDate dueDate;
+
+	@Column(name = "archived_at")
+	private LocalDateTime archivedAt;
+}
@@ -0,0 +1,6 @@
+package com.dagurasu.libraryapi.api.model.entity;
+
+public enum LoanStatus {
+
+	OPEN, RETURNED
+}
@@ -0,0 +1,61 @@
+package com.dagurasu.libraryapi.api.model.entity;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * Notificação gravada na mesma transação da mudança de estado que a originou
+ * e entregue depois pelo OutboxRelay. A chave de deduplicação é única, então
+ * o mesmo evento nunca gera duas mensagens.
+ */
+@Data
+@Builder
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "outbox_message", indexes = @Index(name = "idx_outbox_status_id", columnList = "status, id"))
+public class OutboxMessage {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "dedup_key", length = 150, nullable = false, unique = true)
+	private String dedupKey;
+
+	@Column(nullable = false)
+	private String recipient;
+
+	@Column(nullable = false)
+	private String subject;
+
+	@Column(length = 2000, nullable = false)
+	private String body;
+
+	@Enumerated(EnumType.STRING)
+	@Column(length = 10, nullable = false)
+	private OutboxStatus status;
+
+	@Column(nullable = false)
+	private int attempts;
+
+	@Column
+	private LocalDateTime createdAt;
+
+	@Column
+	private LocalDateTime sentAt;
+}
@@ -0,0 +1,6 @@
+package com.dagurasu.libraryapi.api.model.entity;
+
+public enum OutboxStatus {
+
+	PENDING, SENT, FAILED
+}
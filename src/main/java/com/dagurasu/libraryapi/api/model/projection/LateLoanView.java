@@ -0,0 +1,8 @@
+package com.dagurasu.libraryapi.api.model.projection;
+
+public interface LateLoanView {
+
+	Long getId();
+
+	String getCustomerEmail();
+}
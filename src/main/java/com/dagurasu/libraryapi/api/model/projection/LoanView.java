@@ -0,0 +1,25 @@
+package com.dagurasu.libraryapi.api.model.projection;
+
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Linha das listagens de empréstimo: os campos do empréstimo e do livro lidos
+ * em um único select com join, sem carregar as entidades.
+ */
+@Getter
+@AllArgsConstructor
+public class LoanView {
+
+	private final Long id;
+	private final String customer;
+	private final String customerEmail;
+	private final LocalDate loanDate;
+	private final Boolean returned;
+	private final Long bookId;
+	private final String bookTitle;
+	private final String bookAuthor;
+	private final String bookIsbn;
+}
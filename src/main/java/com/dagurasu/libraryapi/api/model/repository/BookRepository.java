@@ -1,8 +1,16 @@
 package com.dagurasu.libraryapi.api.model.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.dagurasu.libraryapi.api.model.entity.Book;
 
@@ -12,4 +20,23 @@ public interface BookRepository extends JpaRepository<Book, Long> {
 
 	Optional<Book> findByIsbn(String isbn);
 
+	List<Book> findByIsbnIn(Collection<String> isbns);
+
+	@Query(value = "select b.version from Book b where b.id = :id")
+	Optional<Long> findVersionById(@Param("id") Long id);
+
+	@Transactional
+	@Modifying
+	@Query(value = "update Book b set b.title = coalesce(:title, b.title), b.author = coalesce(:author, b.author), "
+			+ "b.version = b.version + 1 where b.id = :id and ( :version is null or b.version = :version )")
+	int patch(@Param("id") Long id, @Param("version") Long version, @Param("title") String title,
+			@Param("author") String author);
+
+	@Query(value = "select b from Book b where b.id > :after "
+			+ "and ( :title is null or lower(b.title) like :title escape '\\' ) "
+			+ "and ( :author is null or lower(b.author) like :author escape '\\' ) "
+			+ "and ( :isbn is null or lower(b.isbn) like :isbn escape '\\' ) ")
+	Slice<Book> findByPatternsAfter(@Param("after") Long after, @Param("title") String title,
+			@Param("author") String author, @Param("isbn") String isbn, Pageable pageable);
+
 }
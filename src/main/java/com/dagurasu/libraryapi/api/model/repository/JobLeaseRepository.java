@@ -0,0 +1,39 @@
+package com.dagurasu.libraryapi.api.model.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.dagurasu.libraryapi.api.model.entity.JobLease;
+
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+	/*
+	 * Um único UPDATE condicional: renova se o lease já é do dono ou toma posse
+	 * se expirou. Zero linhas quer dizer que outra réplica o detém (ou que ele
+	 * ainda não existe).
+	 */
+	@Modifying
+	@Query(value = "update JobLease l set l.owner = :owner, l.expiresAt = :expiresAt, "
+			+ "l.acquiredAt = case when l.owner = :owner then l.acquiredAt else :now end "
+			+ "where l.name = :name and ( l.owner = :owner or l.expiresAt < :now )")
+	int claim(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now,
+			@Param("expiresAt") LocalDateTime expiresAt);
+
+	/*
+	 * Insert puro, sem o merge do save: se outra réplica criou a linha antes, a
+	 * chave primária rejeita em vez de sobrescrever o dono.
+	 */
+	@Modifying
+	@Query(value = "insert into job_lease (name, owner, expires_at, acquired_at) "
+			+ "values (:name, :owner, :expiresAt, :now)", nativeQuery = true)
+	int insert(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now,
+			@Param("expiresAt") LocalDateTime expiresAt);
+
+	@Modifying
+	@Query(value = "update JobLease l set l.expiresAt = :now where l.name = :name and l.owner = :owner")
+	int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,9 @@
+package com.dagurasu.libraryapi.api.model.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.dagurasu.libraryapi.api.model.entity.JobWatermark;
+
+public interface JobWatermarkRepository extends JpaRepository<JobWatermark, String> {
+
+}
@@ -1,30 +1,98 @@
 package com.dagurasu.libraryapi.api.model.repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.dagurasu.libraryapi.api.model.entity.Book;
 import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.projection.LateLoanView;
 
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+public interface LoanRepository extends JpaRepository<Loan, Long>, LoanRepositoryCustom {
+
+	String OPEN = "com.dagurasu.libraryapi.api.model.entity.LoanStatus.OPEN";
+
+	String RETURNED = "com.dagurasu.libraryapi.api.model.entity.LoanStatus.RETURNED";
 
 	@Query(value = " select case when ( count(l.id ) > 0 ) then true else false end "
-			+ "from Loan l where l.book = :book and ( l.returned is null or l.returned is false ) ")
+			+ "from Loan l where l.book = :book and l.status = " + OPEN)
 	boolean existsByBookAndNotReturned(@Param("book") Book book);
 
-	@Query(value = "select l from Loan as l join l.book as b where b.isbn = :isbn or l.customer = :customer")
-	Page<Loan> findByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer,
-			Pageable pageRequest);
+	@Query(value = "select l.openBookId from Loan l where l.openBookId in :bookIds")
+	List<Long> findOpenBookIds(@Param("bookIds") Collection<Long> bookIds);
+
+	@Query(value = "select l from Loan l join fetch l.book where l.id in :ids")
+	List<Loan> findAllWithBookByIdIn(@Param("ids") Collection<Long> ids);
+
+	/*
+	 * Só empréstimos abertos: devolver de novo não regrava a linha nem avança a
+	 * versão. Limpa o contexto de persistência para que quem chama releia os
+	 * empréstimos já com a versão da devolução, que entra na chave do aviso.
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query(value = "update Loan l set l.returned = true, l.status = " + RETURNED + ", l.openBookId = null, "
+			+ "l.version = l.version + 1 "
+			+ "where l.id in :ids and l.status = " + OPEN)
+	int markReturned(@Param("ids") Collection<Long> ids);
+
+	/*
+	 * Reabrir conta um novo prazo e zera o aviso de atraso: com o vencimento
+	 * antigo, anterior à marca d'água e sem aviso, o empréstimo não entraria
+	 * em nenhuma das buscas do aviso de atrasos.
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "update Loan l set l.returned = false, l.status = " + OPEN + ", l.openBookId = l.book.id, "
+			+ "l.dueDate = :dueDate, l.lateNotifiedOn = null, l.version = l.version + 1 "
+			+ "where l.id = :id and l.status = " + RETURNED)
+	int reopen(@Param("id") Long id, @Param("dueDate") LocalDate dueDate);
+
+	/*
+	 * Atrasados são os abertos com vencimento anterior à data de referência:
+	 * igualdade em status e faixa em due_date, uma varredura de intervalo no
+	 * índice (status, due_date) sem tocar o histórico devolvido.
+	 */
+	@Query(value = "select l from Loan l where l.status = " + OPEN + " and l.dueDate < :referenceDate")
+	List<Loan> findLateLoans(@Param("referenceDate") LocalDate referenceDate);
+
+	/*
+	 * Só os que venceram desde a última execução e ainda não foram avisados: a
+	 * faixa de due_date é a janela entre a marca d'água e a data de referência.
+	 * O resto da divisão do id pelo número de partições separa o trabalho entre
+	 * as réplicas; com uma partição o filtro é sempre verdadeiro.
+	 */
+	@Query(value = "select l.id as id, l.customerEmail as customerEmail from Loan l where l.status = " + OPEN
+			+ " and l.dueDate >= :since and l.dueDate < :referenceDate and l.lateNotifiedOn is null "
+			+ "and mod(l.id, :partitions) = :partition and l.id > :after order by l.id")
+	List<LateLoanView> findNewlyLateLoansAfter(@Param("after") Long after, @Param("since") LocalDate since,
+			@Param("referenceDate") LocalDate referenceDate, @Param("partition") int partition,
+			@Param("partitions") int partitions, Pageable pageable);
+
+	@Query(value = "select l.id as id, l.customerEmail as customerEmail from Loan l where l.status = " + OPEN
+			+ " and l.lateNotifiedOn <= :notifiedUntil and mod(l.id, :partitions) = :partition "
+			+ "and l.id > :after order by l.id")
+	List<LateLoanView> findLateLoansToRemindAfter(@Param("after") Long after,
+			@Param("notifiedUntil") LocalDate notifiedUntil, @Param("partition") int partition,
+			@Param("partitions") int partitions, Pageable pageable);
 
-	Page<Loan> findByBook(Book book, Pageable pageable);
+	/*
+	 * Candidatos ao arquivamento: devolvidos com data de empréstimo anterior ao
+	 * corte. O LoanArchiver move um lote por vez até não sobrar nenhum.
+	 */
+	@Query(value = "select l.id from Loan l where l.status = " + RETURNED + " and l.loanDate < :cutoff")
+	List<Long> findArchivableIds(@Param("cutoff") LocalDate cutoff, Pageable pageable);
 
-	@Query(value = "select l from Loan l where l.loanDate <= :threeDaysAgo and ( l.returned is null or l.returned is false )")
-	List<Loan> findByLoansDateLessThanAndNotReturned(@Param("threeDaysAgo") LocalDate threeDaysAgo);
+	@Transactional
+	@Modifying
+	@Query(value = "update Loan l set l.lateNotifiedOn = :notifiedOn, l.version = l.version + 1 where l.id in :ids")
+	int markLateNotified(@Param("ids") Collection<Long> ids, @Param("notifiedOn") LocalDate notifiedOn);
 
 }
@@ -0,0 +1,49 @@
+package com.dagurasu.libraryapi.api.model.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
+
+public interface LoanRepositoryCustom {
+
+	/**
+	 * Insere os empréstimos abertos em um único batch JDBC e preenche os ids
+	 * gerados. Todos os livros devem ser distintos.
+	 */
+	void insertAll(List<Loan> loans);
+
+	/**
+	 * Move para loan_archive os empréstimos informados que ainda estiverem
+	 * devolvidos e retorna quantos foram movidos. Deve rodar em uma transação.
+	 */
+	int archive(Collection<Long> ids, LocalDateTime archivedAt);
+
+	/**
+	 * Empréstimos do livro com o isbn informado ou do cliente, entre os ativos e
+	 * os arquivados.
+	 */
+	Page<LoanView> findWithArchiveByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable);
+
+	/**
+	 * Mesma consulta sem o count: busca uma linha a mais para saber se há
+	 * próxima página.
+	 */
+	Slice<LoanView> findSliceWithArchiveByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable);
+
+	long countWithArchiveByBookIsbnOrCustomer(String isbn, String customer);
+
+	/**
+	 * Página por cursor (id crescente) sobre os empréstimos ativos e os
+	 * arquivados.
+	 */
+	Slice<LoanView> findWithArchiveByBookIsbnOrCustomerAfter(Long after, String isbn, String customer, int size);
+
+	Page<LoanView> findWithArchiveByBookId(Long bookId, Pageable pageable);
+}
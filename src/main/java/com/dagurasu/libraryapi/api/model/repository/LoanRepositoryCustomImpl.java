@@ -0,0 +1,233 @@
+package com.dagurasu.libraryapi.api.model.repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.entity.LoanStatus;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
+
+import lombok.RequiredArgsConstructor;
+
+/*
+ * Com GenerationType.IDENTITY o Hibernate não agrupa inserts, então o lote vai
+ * direto pelo JDBC. Os ids são lidos de volta por open_book_id, que é único
+ * enquanto o empréstimo está aberto.
+ */
+@RequiredArgsConstructor
+public class LoanRepositoryCustomImpl implements LoanRepositoryCustom {
+
+	private static final String INSERT_LOAN = "insert into loan (customer, customer_email, id_book, loan_date, due_date, status, "
+			+ "open_book_id, version) values (:customer, :customerEmail, :bookId, :loanDate, :dueDate, 'OPEN', :bookId, 0)";
+	private static final String SELECT_IDS = "select id, open_book_id from loan where open_book_id in (:bookIds)";
+
+	private static final String LOCK_ARCHIVABLE = "select id from loan where id in (:ids) and status = 'RETURNED' for update";
+	private static final String INSERT_ARCHIVE = "insert into loan_archive (id, customer, customer_email, id_book, loan_date, "
+			+ "due_date, archived_at) select id, customer, customer_email, id_book, loan_date, due_date, :archivedAt "
+			+ "from loan where id in (:ids)";
+	private static final String DELETE_ARCHIVED = "delete from loan where id in (:ids)";
+
+	/*
+	 * As consultas que atravessam as duas tabelas: cada condição vira um ramo
+	 * sobre loan e outro sobre loan_archive, e a ordenação e a paginação são
+	 * aplicadas sobre a união. Um OR entre isbn e cliente obrigaria o banco a
+	 * varrer loan; em ramos separados, cada um usa o seu índice, e o UNION
+	 * descarta o empréstimo que atende aos dois.
+	 */
+	private static final String SELECT_ACTIVE = "select l.id, l.customer, l.customer_email, l.loan_date, l.returned, "
+			+ "b.id as book_id, b.title, b.author, b.isbn from loan l join book b on b.id = l.id_book where ";
+	private static final String SELECT_ARCHIVED = "select a.id, a.customer, a.customer_email, a.loan_date, true, "
+			+ "b.id, b.title, b.author, b.isbn from loan_archive a join book b on b.id = a.id_book where ";
+
+	private static final String BY_ISBN = "b.isbn = :isbn";
+	private static final String BY_CUSTOMER = "%1$s.customer = :customer";
+	private static final String BY_BOOK = "%1$s.id_book = :bookId";
+	private static final String AFTER = "%1$s.id > :after and ";
+
+	/*
+	 * Propriedades de LoanView aceitas na ordenação; as demais são ignoradas. O
+	 * id entra sempre por último para a paginação ser estável.
+	 */
+	private static final Map<String, String> SORT_COLUMNS = new HashMap<>();
+
+	static {
+		SORT_COLUMNS.put("id", "id");
+		SORT_COLUMNS.put("customer", "customer");
+		SORT_COLUMNS.put("customerEmail", "customer_email");
+		SORT_COLUMNS.put("loanDate", "loan_date");
+		SORT_COLUMNS.put("returned", "returned");
+	}
+
+	private final NamedParameterJdbcTemplate jdbcTemplate;
+
+	@Override
+	public void insertAll(List<Loan> loans) {
+		if (loans.isEmpty()) {
+			return;
+		}
+
+		List<SqlParameterSource> params = new ArrayList<>(loans.size());
+		Map<Long, Loan> byBook = new HashMap<>();
+		for (Loan loan : loans) {
+			Long bookId = loan.getBook().getId();
+			byBook.put(bookId, loan);
+			params.add(new MapSqlParameterSource()
+					.addValue("customer", loan.getCustomer())
+					.addValue("customerEmail", loan.getCustomerEmail())
+					.addValue("bookId", bookId)
+					.addValue("loanDate", loan.getLoanDate() == null ? null : Date.valueOf(loan.getLoanDate()))
+					.addValue("dueDate", loan.getDueDate() == null ? null : Date.valueOf(loan.getDueDate())));
+		}
+		jdbcTemplate.batchUpdate(INSERT_LOAN, params.toArray(new SqlParameterSource[params.size()]));
+
+		/*
+		 * As entidades só recebem o estado persistido depois do batch: se ele
+		 * falhar, continuam novas e ainda podem ser gravadas pelo save().
+		 */
+		jdbcTemplate.query(SELECT_IDS, new MapSqlParameterSource("bookIds", byBook.keySet()),
+				rs -> {
+					Loan loan = byBook.get(rs.getLong("open_book_id"));
+					loan.setId(rs.getLong("id"));
+					loan.setStatus(LoanStatus.OPEN);
+					loan.setOpenBookId(loan.getBook().getId());
+					loan.setVersion(0L);
+				});
+	}
+
+	/*
+	 * As linhas são travadas antes da cópia: um empréstimo reaberto entre a
+	 * seleção e o arquivamento fica de fora em vez de ir para o arquivo.
+	 */
+	@Override
+	public int archive(Collection<Long> ids, LocalDateTime archivedAt) {
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		List<Long> locked = jdbcTemplate.queryForList(LOCK_ARCHIVABLE, new MapSqlParameterSource("ids", ids),
+				Long.class);
+		if (locked.isEmpty()) {
+			return 0;
+		}
+		MapSqlParameterSource params = new MapSqlParameterSource("ids", locked)
+				.addValue("archivedAt", Timestamp.valueOf(archivedAt));
+		jdbcTemplate.update(INSERT_ARCHIVE, params);
+		return jdbcTemplate.update(DELETE_ARCHIVED, params);
+	}
+
+	@Override
+	public Page<LoanView> findWithArchiveByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable) {
+		MapSqlParameterSource params = new MapSqlParameterSource("isbn", isbn).addValue("customer", customer);
+		return page(union(BY_ISBN, BY_CUSTOMER), params, pageable);
+	}
+
+	@Override
+	public Slice<LoanView> findSliceWithArchiveByBookIsbnOrCustomer(String isbn, String customer, Pageable pageable) {
+		MapSqlParameterSource params = new MapSqlParameterSource("isbn", isbn).addValue("customer", customer);
+		return slice(union(BY_ISBN, BY_CUSTOMER), params, pageable);
+	}
+
+	@Override
+	public long countWithArchiveByBookIsbnOrCustomer(String isbn, String customer) {
+		MapSqlParameterSource params = new MapSqlParameterSource("isbn", isbn).addValue("customer", customer);
+		return count(union(BY_ISBN, BY_CUSTOMER), params);
+	}
+
+	@Override
+	public Slice<LoanView> findWithArchiveByBookIsbnOrCustomerAfter(Long after, String isbn, String customer,
+			int size) {
+		MapSqlParameterSource params = new MapSqlParameterSource("after", after).addValue("isbn", isbn)
+				.addValue("customer", customer).addValue("limit", size + 1).addValue("offset", 0);
+		List<LoanView> content = jdbcTemplate.query(select(union(AFTER + BY_ISBN, AFTER + BY_CUSTOMER),
+				Sort.by("id")), params, (rs, row) -> toView(rs));
+		boolean hasNext = content.size() > size;
+		if (hasNext) {
+			content = content.subList(0, size);
+		}
+		return new SliceImpl<>(content, PageRequest.of(0, size, Sort.by("id")), hasNext);
+	}
+
+	@Override
+	public Page<LoanView> findWithArchiveByBookId(Long bookId, Pageable pageable) {
+		return page(union(BY_BOOK), new MapSqlParameterSource("bookId", bookId), pageable);
+	}
+
+	private Page<LoanView> page(String union, MapSqlParameterSource params, Pageable pageable) {
+		long total = count(union, params);
+		if (total == 0 || (pageable.isPaged() && pageable.getOffset() >= total)) {
+			return new PageImpl<>(new ArrayList<>(), pageable, total);
+		}
+
+		params.addValue("limit", pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE)
+				.addValue("offset", pageable.isPaged() ? pageable.getOffset() : 0);
+		List<LoanView> content = jdbcTemplate.query(select(union, pageable.getSort()), params,
+				(rs, row) -> toView(rs));
+		return new PageImpl<>(content, pageable, total);
+	}
+
+	private Slice<LoanView> slice(String union, MapSqlParameterSource params, Pageable pageable) {
+		if (pageable.isUnpaged()) {
+			return new SliceImpl<>(jdbcTemplate.query(select(union, pageable.getSort()),
+					params.addValue("limit", Integer.MAX_VALUE).addValue("offset", 0), (rs, row) -> toView(rs)));
+		}
+		params.addValue("limit", pageable.getPageSize() + 1).addValue("offset", pageable.getOffset());
+		List<LoanView> content = jdbcTemplate.query(select(union, pageable.getSort()), params,
+				(rs, row) -> toView(rs));
+		boolean hasNext = content.size() > pageable.getPageSize();
+		if (hasNext) {
+			content = content.subList(0, pageable.getPageSize());
+		}
+		return new SliceImpl<>(content, pageable, hasNext);
+	}
+
+	private long count(String union, MapSqlParameterSource params) {
+		return jdbcTemplate.queryForObject("select count(*) from ( " + union + " ) v", params, Long.class);
+	}
+
+	private static String union(String... conditions) {
+		StringJoiner union = new StringJoiner(conditions.length > 1 ? " union " : " union all ");
+		for (String condition : conditions) {
+			union.add(SELECT_ACTIVE + String.format(condition, "l"));
+			union.add(SELECT_ARCHIVED + String.format(condition, "a"));
+		}
+		return union.toString();
+	}
+
+	private static String select(String union, Sort sort) {
+		StringBuilder sql = new StringBuilder("select * from ( ").append(union).append(" ) v order by ");
+		for (Sort.Order order : sort) {
+			String column = SORT_COLUMNS.get(order.getProperty());
+			if (column != null && !"id".equals(column)) {
+				sql.append(column).append(order.isAscending() ? " asc, " : " desc, ");
+			}
+		}
+		Sort.Order byId = sort.getOrderFor("id");
+		sql.append(byId != null && byId.isDescending() ? "id desc" : "id asc");
+		return sql.append(" limit :limit offset :offset").toString();
+	}
+
+	private static LoanView toView(ResultSet rs) throws SQLException {
+		return new LoanView(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getObject(4, LocalDate.class),
+				rs.getObject(5, Boolean.class), rs.getLong(6), rs.getString(7), rs.getString(8), rs.getString(9));
+	}
+}
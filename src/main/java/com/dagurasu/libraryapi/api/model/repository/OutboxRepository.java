@@ -0,0 +1,38 @@
+package com.dagurasu.libraryapi.api.model.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.dagurasu.libraryapi.api.model.entity.OutboxMessage;
+import com.dagurasu.libraryapi.api.model.entity.OutboxStatus;
+
+public interface OutboxRepository extends JpaRepository<OutboxMessage, Long> {
+
+	@Query(value = "select m.dedupKey from OutboxMessage m where m.dedupKey in :keys")
+	List<String> findExistingDedupKeys(@Param("keys") Collection<String> keys);
+
+	@Query(value = "select m from OutboxMessage m where m.status = :status and m.id > :after order by m.id")
+	List<OutboxMessage> findByStatusAfter(@Param("status") OutboxStatus status, @Param("after") Long after,
+			Pageable pageable);
+
+	@Modifying
+	@Query(value = "update OutboxMessage m set m.status = com.dagurasu.libraryapi.api.model.entity.OutboxStatus.SENT, m.sentAt = :sentAt where m.id in :ids")
+	int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+
+	@Modifying
+	@Query(value = "update OutboxMessage m set m.attempts = m.attempts + 1 where m.id in :ids")
+	int incrementAttempts(@Param("ids") Collection<Long> ids);
+
+	@Modifying
+	@Query(value = "update OutboxMessage m set m.status = com.dagurasu.libraryapi.api.model.entity.OutboxStatus.FAILED where m.id in :ids and m.attempts >= :maxAttempts")
+	int markFailed(@Param("ids") Collection<Long> ids, @Param("maxAttempts") int maxAttempts);
+
+	long countByStatus(OutboxStatus status);
+}
@@ -1,32 +1,47 @@
 package com.dagurasu.libraryapi.api.resource;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 
 import javax.validation.Valid;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
 import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.dagurasu.libraryapi.api.dto.BookImportResultDTO;
+import com.dagurasu.libraryapi.api.dto.CursorPageDTO;
 import com.dagurasu.libraryapi.api.dto.LoanDTO;
+import com.dagurasu.libraryapi.api.mapper.BookMapper;
+import com.dagurasu.libraryapi.api.mapper.LoanMapper;
 import com.dagurasu.libraryapi.api.model.entity.Book;
-import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
+import com.dagurasu.libraryapi.api.service.BookImportService;
 import com.dagurasu.libraryapi.api.service.BookService;
 import com.dagurasu.libraryapi.api.service.LoanService;
+import com.dagurasu.libraryapi.api.service.importer.BookImportFormat;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -39,8 +54,10 @@ import lombok.extern.slf4j.Slf4j;
 public class BookController {
 
 	public final BookService service;
-	private final ModelMapper modelMapper;
+	private final BookMapper bookMapper;
+	private final LoanMapper loanMapper;
 	private final LoanService loanService;
+	private final BookImportService importService;
 
 	@PostMapping
 	@ResponseStatus(HttpStatus.CREATED)
@@ -53,17 +70,44 @@ public class BookController {
 	 */
 	public BookDTO create(@RequestBody @Valid BookDTO dto) {
 		log.info("Create a book for isbn: {} ", dto.getIsbn());
-		Book entity = modelMapper.map(dto, Book.class);
+		Book entity = bookMapper.toEntity(dto);
 		entity = service.save(entity);
-		return modelMapper.map(entity, BookDTO.class);
+		return bookMapper.toDTO(entity);
 	}
 
+	/*
+	 * Importação em massa: o corpo (CSV ou NDJSON) é lido como fluxo e gravado
+	 * em lotes; as linhas rejeitadas voltam no relatório.
+	 */
+	@PostMapping(value = "import", consumes = { BookImportFormat.TEXT_CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+	public BookImportResultDTO importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+			InputStream body) {
+		log.info("Import books from {}", contentType);
+		InputStreamReader reader = new InputStreamReader(body,
+				contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8);
+		return importService.importBooks(reader, BookImportFormat.of(contentType));
+	}
+
+	/*
+	 * A versão vem sempre do banco: se o cliente já tem a cópia atual, a
+	 * resposta é um 304 sem corpo; senão o corpo sai do cache só quando a
+	 * versão guardada é a atual, e é relido do banco quando outra réplica
+	 * alterou o livro.
+	 */
 	@GetMapping("{id}")
 	//@ApiOperation("Obtains a book details by id")
-	public BookDTO get(@PathVariable Long id) {
+	public ResponseEntity<BookDTO> get(@PathVariable Long id,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 		log.info("Obtain details for book id {} ", id);
-		return service.getById(id).map(book -> modelMapper.map(book, BookDTO.class))
+		Long version = service.getVersion(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+		String etag = ETags.of(version);
+		if (ETags.matches(ifNoneMatch, etag, true)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+		}
+		Optional<Book> cached = service.getById(id).filter(book -> version.equals(book.getVersion()));
+		Book book = (cached.isPresent() ? cached : service.getCurrentById(id))
 				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+		return ResponseEntity.ok().eTag(ETags.of(book.getVersion())).body(bookMapper.toDTO(book));
 	}
 
 	@DeleteMapping("{id}")
@@ -75,9 +119,11 @@ public class BookController {
 	 * 
 	 * @ApiResponse(code = 204, message = "Book successfully deleted!") })
 	 */
-	public void delete(@PathVariable Long id) {
+	public void delete(@PathVariable Long id,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 		log.info("Delete book of id {} ", id);
-		Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+		Book book = service.getCurrentById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+		ETags.checkIfMatch(ifMatch, book.getVersion());
 		service.delete(book);
 	}
 
@@ -89,32 +135,72 @@ public class BookController {
 	 * 
 	 * @ApiResponse(code = 201, message = "Book successfully created!") })
 	 */
-	public BookDTO update(@PathVariable Long id,@RequestBody @Valid BookDTO dto) {
-		return service.getById(id).map(book -> {
+	public ResponseEntity<BookDTO> update(@PathVariable Long id, @RequestBody @Valid BookDTO dto,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		return service.getCurrentById(id).map(book -> {
 			
-			book.setAuthor(dto.getAuthor());
-			book.setTitle(dto.getTitle());
-
-			book = service.update(book);
-			return modelMapper.map(book, BookDTO.class);
+			ETags.checkIfMatch(ifMatch, book.getVersion());
+			// o livro lido também fica guardado no cache: altera-se uma cópia
+			book = service.update(book.toBuilder().author(dto.getAuthor()).title(dto.getTitle()).build());
+			return ResponseEntity.ok().eTag(ETags.of(book.getVersion())).body(bookMapper.toDTO(book));
 
 		}).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 	}
 	
+	/*
+	 * Atualização parcial: só título e/ou autor, em um único UPDATE; o 404 vem
+	 * da contagem de linhas afetadas. Com If-Match, a versão conferida vai no
+	 * WHERE do UPDATE: se outra escrita passou entre a conferência e o UPDATE,
+	 * nenhuma linha muda e a resposta é 412.
+	 */
+	@PatchMapping("{id}")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	public void patch(@PathVariable Long id, @RequestBody BookDTO dto,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		if (dto.getTitle() == null && dto.getAuthor() == null || blankIfPresent(dto.getTitle())
+				|| blankIfPresent(dto.getAuthor())) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Title or author must be informed and not blank");
+		}
+		if (tooLong(dto.getTitle()) || tooLong(dto.getAuthor())) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Title and author must have at most 255 characters");
+		}
+		Long version = null;
+		if (ifMatch != null) {
+			version = service.getVersion(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+			ETags.checkIfMatch(ifMatch, version);
+		}
+		if (!service.patch(id, version, dto.getTitle(), dto.getAuthor())) {
+			if (version != null && service.getVersion(id).isPresent()) {
+				throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Resource version does not match");
+			}
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+		}
+	}
+
 	@GetMapping
 	//@ApiOperation("Find book by params")
-	public Page<BookDTO> find(BookDTO dto, Pageable pageRequest) {
+	public Slice<BookDTO> find(BookDTO dto, Pageable pageRequest, @RequestParam(defaultValue = "exact") String count) {
 		
-		Book filter = modelMapper.map(dto, Book.class);
-		Page<Book> result = service.find(filter, pageRequest);
+		Book filter = bookMapper.toEntity(dto);
+		switch (CountMode.of(count)) {
+		case NONE:
+			Slice<Book> slice = service.findSlice(filter, pageRequest);
+			return new SliceImpl<>(bookMapper.toDTOs(slice.getContent()), pageRequest, slice.hasNext());
+		case APPROXIMATE:
+			return toPage(service.findApproximate(filter, pageRequest), pageRequest);
+		default:
+			return toPage(service.find(filter, pageRequest), pageRequest);
+		}
 		
-		List<BookDTO> list = result.getContent()
-			.stream()
-			.map(entity -> modelMapper.map(entity, BookDTO.class))
-			.collect(Collectors.toList());
+	}
+
+	@GetMapping(params = "after")
+	public CursorPageDTO<BookDTO> findAfter(BookDTO dto, @RequestParam String after,
+			@RequestParam(defaultValue = "20") int size) {
 		
-		return new PageImpl<BookDTO>(list, pageRequest, result.getTotalElements());
+		Slice<Book> result = service.findAfter(bookMapper.toEntity(dto), Cursors.decode(after), Cursors.size(size));
 		
+		return Cursors.page(result, bookMapper.toDTOs(result.getContent()), Book::getId);
 	}
 	
 	@GetMapping("{id}/loans")
@@ -122,21 +208,21 @@ public class BookController {
 		
 		Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 		
-		Page<Loan> result = loanService.getLoansByBook(book, pageable);
-		
-		List<LoanDTO> list = result.getContent()
-				.stream()
-				.map(loan -> {
-					Book loanBook = loan.getBook();
-					BookDTO bookDTO = modelMapper.map(loanBook, BookDTO.class);
-					LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
-					loanDTO.setBook(bookDTO);
-	
-					return loanDTO;
-		
-				}).collect(Collectors.toList());
+		Page<LoanView> result = loanService.getLoansByBook(book, pageable);
 		
-		return new PageImpl<>(list, pageable, result.getTotalElements());
+		return new PageImpl<>(loanMapper.viewsToDTOs(result.getContent()), pageable, result.getTotalElements());
 		
 	}
+
+	private Page<BookDTO> toPage(Page<Book> result, Pageable pageRequest) {
+		return new PageImpl<BookDTO>(bookMapper.toDTOs(result.getContent()), pageRequest, result.getTotalElements());
+	}
+
+	private static boolean blankIfPresent(String value) {
+		return value != null && value.trim().isEmpty();
+	}
+
+	private static boolean tooLong(String value) {
+		return value != null && value.length() > 255;
+	}
 }
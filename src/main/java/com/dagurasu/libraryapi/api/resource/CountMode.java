@@ -0,0 +1,24 @@
+package com.dagurasu.libraryapi.api.resource;
+
+import java.util.Locale;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Parâmetro count das listagens paginadas: exact (padrão) faz o count a cada
+ * página, approximate usa o total em cache do SearchCounts e none devolve só
+ * a página e se há próxima (Slice), sem total.
+ */
+enum CountMode {
+
+	EXACT, APPROXIMATE, NONE;
+
+	static CountMode of(String value) {
+		try {
+			return valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid count, use exact, approximate or none");
+		}
+	}
+}
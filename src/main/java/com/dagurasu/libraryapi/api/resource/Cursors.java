@@ -0,0 +1,63 @@
+package com.dagurasu.libraryapi.api.resource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.dagurasu.libraryapi.api.dto.CursorPageDTO;
+
+/**
+ * Token opaco usado na paginação por cursor: codifica o id do último registro
+ * devolvido, a partir do qual a próxima página é buscada.
+ */
+final class Cursors {
+
+	static final int MAX_SIZE = 1000;
+
+	private static final String PREFIX = "id:";
+
+	private Cursors() {
+	}
+
+	static String encode(Long id) {
+		byte[] bytes = (PREFIX + id).getBytes(StandardCharsets.UTF_8);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+
+	static Long decode(String token) {
+		if (!StringUtils.hasText(token)) {
+			return 0L;
+		}
+		try {
+			String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			if (!value.startsWith(PREFIX)) {
+				throw new IllegalArgumentException(value);
+			}
+			return Long.valueOf(value.substring(PREFIX.length()));
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+		}
+	}
+
+	static int size(int size) {
+		if (size < 1 || size > MAX_SIZE) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size");
+		}
+		return size;
+	}
+
+	static <E, D> CursorPageDTO<D> page(Slice<E> slice, List<D> content, Function<E, Long> id) {
+		String next = null;
+		if (slice.hasNext() && slice.hasContent()) {
+			List<E> rows = slice.getContent();
+			next = encode(id.apply(rows.get(rows.size() - 1)));
+		}
+		return new CursorPageDTO<>(content, slice.getSize(), slice.hasNext(), next);
+	}
+}
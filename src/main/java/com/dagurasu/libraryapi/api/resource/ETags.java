@@ -0,0 +1,52 @@
+package com.dagurasu.libraryapi.api.resource;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * ETags fortes derivados da coluna de versão das entidades, usados nas
+ * requisições condicionais (If-None-Match / If-Match).
+ */
+final class ETags {
+
+	private static final String ANY = "*";
+
+	private static final String WEAK_PREFIX = "W/";
+
+	private ETags() {
+	}
+
+	static String of(Long version) {
+		return "\"" + (version == null ? 0L : version) + "\"";
+	}
+
+	/*
+	 * Compara com cada valor da lista do cabeçalho; "*" casa com qualquer
+	 * versão existente. If-None-Match usa comparação fraca e If-Match, forte.
+	 */
+	static boolean matches(String header, String etag, boolean weak) {
+		if (header == null) {
+			return false;
+		}
+		for (String candidate : header.split(",")) {
+			String value = candidate.trim();
+			if (weak && value.startsWith(WEAK_PREFIX)) {
+				value = value.substring(WEAK_PREFIX.length());
+			}
+			if (ANY.equals(value) || etag.equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Sem If-Match a escrita segue incondicional; com ele, uma versão diferente
+	 * da atual é rejeitada com 412 em vez de sobrescrever a alteração de outro.
+	 */
+	static void checkIfMatch(String ifMatch, Long version) {
+		if (ifMatch != null && !matches(ifMatch, of(version), false)) {
+			throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Resource version does not match");
+		}
+	}
+}
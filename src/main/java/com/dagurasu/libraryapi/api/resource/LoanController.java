@@ -1,13 +1,18 @@
 package com.dagurasu.libraryapi.api.resource;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
-import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -15,16 +20,20 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
-import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.dagurasu.libraryapi.api.dto.CursorPageDTO;
+import com.dagurasu.libraryapi.api.dto.LoanBatchItemDTO;
 import com.dagurasu.libraryapi.api.dto.LoanDTO;
 import com.dagurasu.libraryapi.api.dto.LoanFilterDTO;
 import com.dagurasu.libraryapi.api.dto.ReturnedLoanDTO;
+import com.dagurasu.libraryapi.api.mapper.LoanMapper;
 import com.dagurasu.libraryapi.api.model.entity.Book;
 import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
 import com.dagurasu.libraryapi.api.service.BookService;
 import com.dagurasu.libraryapi.api.service.LoanService;
 
@@ -37,7 +46,10 @@ public class LoanController {
 
 	private final LoanService service;
 	private final BookService bookService;
-	private final ModelMapper modelMapper;
+	private final LoanMapper loanMapper;
+
+	@Value("${application.loans.batch.max-size:500}")
+	private int maxBatchSize;
 
 	@PostMapping
 	@ResponseStatus(HttpStatus.CREATED)
@@ -45,7 +57,8 @@ public class LoanController {
 
 		Book book = bookService.getBookByIsbn(dto.getIsbn()).orElseThrow(
 				() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Book not found for passed isbn"));
-		Loan entity = Loan.builder().book(book).customer(dto.getCustomer()).loanDate(LocalDate.now()).build();
+		Loan entity = Loan.builder().book(book).customer(dto.getCustomer()).customerEmail(dto.getEmail())
+				.loanDate(LocalDate.now()).build();
 
 		entity = service.save(entity);
 
@@ -54,28 +67,73 @@ public class LoanController {
 
 	@PatchMapping("{id}")
 	public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto) {
-		Loan loan = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-		loan.setReturned(dto.getReturned());
+		if (!service.returnLoan(id, Boolean.TRUE.equals(dto.getReturned()))) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+		}
+	}
+
+	/*
+	 * Empréstimos em lote: todos os livros são resolvidos em uma consulta e o
+	 * resultado de cada item volta na mesma posição do pedido.
+	 */
+	@PostMapping("batch")
+	public List<LoanBatchItemDTO> createBatch(@RequestBody List<LoanDTO> dtos) {
+		checkBatchSize(dtos.size());
+
+		Set<String> isbns = new HashSet<>();
+		for (LoanDTO dto : dtos) {
+			if (dto.getIsbn() != null) {
+				isbns.add(dto.getIsbn());
+			}
+		}
+		Map<String, Book> books = bookService.getBooksByIsbn(isbns);
 
-		service.update(loan);
+		List<Loan> loans = new ArrayList<>(dtos.size());
+		for (LoanDTO dto : dtos) {
+			loans.add(Loan.builder().book(books.get(dto.getIsbn())).customer(dto.getCustomer())
+					.customerEmail(dto.getEmail()).loanDate(LocalDate.now()).build());
+		}
+		return service.saveAll(loans);
+	}
+
+	@PatchMapping("batch")
+	public List<LoanBatchItemDTO> returnBatch(@RequestBody List<Long> ids) {
+		checkBatchSize(ids.size());
+		return service.returnAll(ids);
 	}
 
 	@GetMapping
-	public Page<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest) {
+	public Slice<LoanDTO> find(LoanFilterDTO dto, Pageable pageRequest,
+			@RequestParam(defaultValue = "exact") String count) {
 		
-		Page<Loan> result = service.find(dto, pageRequest);
-		List<LoanDTO> loans = result
-				.getContent()
-				.stream()
-				.map(entity -> {
-					
-					Book book = entity.getBook();
-					BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-					LoanDTO loanDTO = modelMapper.map(entity, LoanDTO.class);
-					loanDTO.setBook(bookDTO);
-					return loanDTO;
-					
-				}).collect(Collectors.toList());
-			return new PageImpl<LoanDTO>(loans, pageRequest, result.getTotalElements());
+		switch (CountMode.of(count)) {
+		case NONE:
+			Slice<LoanView> slice = service.findSlice(dto, pageRequest);
+			return new SliceImpl<>(loanMapper.viewsToDTOs(slice.getContent()), pageRequest, slice.hasNext());
+		case APPROXIMATE:
+			return toPage(service.findApproximate(dto, pageRequest), pageRequest);
+		default:
+			return toPage(service.find(dto, pageRequest), pageRequest);
+		}
+	}
+
+	@GetMapping(params = "after")
+	public CursorPageDTO<LoanDTO> findAfter(LoanFilterDTO dto, @RequestParam String after,
+			@RequestParam(defaultValue = "20") int size) {
+
+		Slice<LoanView> result = service.findAfter(dto, Cursors.decode(after), Cursors.size(size));
+		return Cursors.page(result, loanMapper.viewsToDTOs(result.getContent()), LoanView::getId);
+	}
+
+	private Page<LoanDTO> toPage(Page<LoanView> result, Pageable pageRequest) {
+		return new PageImpl<LoanDTO>(loanMapper.viewsToDTOs(result.getContent()), pageRequest,
+				result.getTotalElements());
+	}
+
+	private void checkBatchSize(int size) {
+		if (size < 1 || size > maxBatchSize) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"Batch size must be between 1 and " + maxBatchSize);
+		}
 	}
 }
@@ -0,0 +1,11 @@
+package com.dagurasu.libraryapi.api.service;
+
+import java.io.Reader;
+
+import com.dagurasu.libraryapi.api.dto.BookImportResultDTO;
+import com.dagurasu.libraryapi.api.service.importer.BookImportFormat;
+
+public interface BookImportService {
+
+	BookImportResultDTO importBooks(Reader reader, BookImportFormat format);
+}
@@ -1,9 +1,12 @@
 package com.dagurasu.libraryapi.api.service;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import com.dagurasu.libraryapi.api.model.entity.Book;
 
@@ -11,14 +14,40 @@ public interface BookService {
 
 	Book save(Book book);
 
+	/**
+	 * Leitura pelo cache local, que pode estar atrás do banco (outra réplica
+	 * pode ter alterado o livro); serve só a quem tolera isso.
+	 */
 	Optional<Book> getById(Long id);
 
+	/**
+	 * Leitura direto do banco, que também renova a entrada do cache; base para
+	 * escritas e para conferir a versão.
+	 */
+	Optional<Book> getCurrentById(Long id);
+
+	Optional<Long> getVersion(Long id);
+
 	void delete(Book book);
 
 	Book update(Book book);
 
+	/**
+	 * Altera título e/ou autor. Com a versão informada, só altera se ela ainda
+	 * for a atual; devolve false quando nenhuma linha foi alterada.
+	 */
+	boolean patch(Long id, Long version, String title, String author);
+
 	Page<Book> find(Book filter, Pageable pageRequest);
 
+	Slice<Book> findSlice(Book filter, Pageable pageRequest);
+
+	Page<Book> findApproximate(Book filter, Pageable pageRequest);
+
+	Slice<Book> findAfter(Book filter, Long afterId, int size);
+
 	Optional<Book> getBookByIsbn(String isbn);
 
+	Map<String, Book> getBooksByIsbn(Collection<String> isbns);
+
 }
@@ -0,0 +1,15 @@
+package com.dagurasu.libraryapi.api.service;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class EmailDispatchResult {
+
+	private int sent;
+	private int failed;
+	private List<String> failedRecipients;
+}
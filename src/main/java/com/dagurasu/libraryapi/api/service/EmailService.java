@@ -4,6 +4,6 @@ import java.util.List;
 
 public interface EmailService {
 
-	void sendEmails(String mensagem, List<String> mailList);
+	EmailDispatchResult sendEmails(String subject, String mensagem, List<String> mailList);
 
 }
@@ -0,0 +1,16 @@
+package com.dagurasu.libraryapi.api.service;
+
+import lombok.Value;
+
+/**
+ * Fatia dos empréstimos com id % count == index, usada para dividir um job
+ * entre réplicas.
+ */
+@Value
+public class LoanPartition {
+
+	public static final LoanPartition ALL = new LoanPartition(0, 1);
+
+	int index;
+	int count;
+}
@@ -1,14 +1,20 @@
 package com.dagurasu.libraryapi.api.service;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import com.dagurasu.libraryapi.api.dto.LoanBatchItemDTO;
 import com.dagurasu.libraryapi.api.dto.LoanFilterDTO;
 import com.dagurasu.libraryapi.api.model.entity.Book;
 import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.projection.LateLoanView;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
 
 public interface LoanService {
 
@@ -18,9 +24,29 @@ public interface LoanService {
 
 	Loan update(Loan loan);
 
-	Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable);
+	boolean returnLoan(Long id, boolean returned);
 
-	Page<Loan> getLoansByBook(Book book, Pageable pageable);
+	List<LoanBatchItemDTO> saveAll(List<Loan> loans);
+
+	List<LoanBatchItemDTO> returnAll(List<Long> ids);
+
+	Page<LoanView> find(LoanFilterDTO filterDTO, Pageable pageable);
+
+	Slice<LoanView> findSlice(LoanFilterDTO filterDTO, Pageable pageable);
+
+	Page<LoanView> findApproximate(LoanFilterDTO filterDTO, Pageable pageable);
+
+	Slice<LoanView> findAfter(LoanFilterDTO filterDTO, Long afterId, int size);
+
+	Page<LoanView> getLoansByBook(Book book, Pageable pageable);
 
 	List<Loan> getAllLateLoans();
+
+	List<LateLoanView> getNewlyLateLoansAfter(LocalDate since, LocalDate referenceDate, LoanPartition partition,
+			Long afterId, int size);
+
+	List<LateLoanView> getLateLoansToRemindAfter(LocalDate notifiedUntil, LoanPartition partition, Long afterId,
+			int size);
+
+	int markLateNotified(Collection<Long> ids, LocalDate notifiedOn);
 }
@@ -1,37 +1,191 @@
 package com.dagurasu.libraryapi.api.service;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
-import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.entity.JobWatermark;
+import com.dagurasu.libraryapi.api.model.projection.LateLoanView;
+import com.dagurasu.libraryapi.api.model.repository.JobWatermarkRepository;
+import com.dagurasu.libraryapi.api.service.lease.JobLeases;
+import com.dagurasu.libraryapi.api.service.outbox.NotificationOutbox;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ScheduleService {
 
 	private static final String CRON_LATE_LOANS = "0 0 0 1/1 * ?";
 	
+	static final String LATE_LOANS_JOB = "late-loans";
+	
+	/*
+	 * Sem marca d'água gravada, a primeira execução cobre todo o atraso acumulado.
+	 */
+	static final LocalDate INITIAL_WATERMARK = LocalDate.of(1970, 1, 1);
+	
 	@Value("${application.mail.late.loans.message}")
 	private String mensagem;
 	
+	@Value("${application.mail.late.loans.chunk-size:500}")
+	private int chunkSize;
+	
+	@Value("${application.mail.late.loans.reminder-days:7}")
+	private int reminderDays;
+	
+	@Value("${application.mail.late.loans.partitions:1}")
+	private int partitions;
+	
+	@Value("${application.jobs.lease.ttl-ms:600000}")
+	private long leaseTtlMs;
+	
 	private final LoanService loanService;
-	private final EmailService emailService;
+	private final NotificationOutbox outbox;
+	private final JobWatermarkRepository watermarks;
+	private final JobLeases leases;
+	private final TransactionOperations transactions;
+	private final MeterRegistry meterRegistry;
 	
+	/*
+	 * Todas as réplicas disparam o cron; cada partição só é processada por quem
+	 * obtiver o seu lease no banco. Com uma partição, isso elege uma única
+	 * réplica; com várias, elas dividem o trabalho, cada uma tentando as
+	 * partições em ordem aleatória.
+	 */
 	@Scheduled(cron = CRON_LATE_LOANS)
 	public void sendMailToLateLoans() {
 		
-		List<Loan> allLateLoans = loanService.getAllLateLoans();
-		List<String> mailList = allLateLoans
-				.stream()
-				.map(loan -> loan.getCustomerEmail())
-				.collect(Collectors.toList());
+		LocalDate today = LocalDate.now();
+		List<Integer> order = new ArrayList<>(partitions);
+		for (int i = 0; i < partitions; i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order);
+		
+		for (int index : order) {
+			LoanPartition partition = new LoanPartition(index, partitions);
+			String lease = partitions == 1 ? LATE_LOANS_JOB : LATE_LOANS_JOB + ":" + index;
+			if (!leases.tryAcquire(lease, leaseTtl())) {
+				log.debug("Late loans partition {} held by another instance", lease);
+				continue;
+			}
+			try {
+				processPartition(lease, partition, today);
+			} catch (LeaseLostException e) {
+				log.warn("Late loans partition {} stopped: {}", lease, e.getMessage());
+			} finally {
+				leases.release(lease);
+			}
+		}
+	}
+	
+	/*
+	 * Incremental: avisa só os empréstimos que venceram desde a última execução
+	 * e, a cada reminder-days, os que continuam atrasados. Cada bloco grava as
+	 * notificações no outbox e marca os empréstimos como avisados na mesma
+	 * transação da leitura, então uma nova execução após uma queda não repete
+	 * o trabalho. A marca d'água só avança ao fim da execução.
+	 */
+	private void processPartition(String name, LoanPartition partition, LocalDate today) {
+		LocalDate since = watermarks.findById(name).map(JobWatermark::getWatermark).orElse(INITIAL_WATERMARK);
+		if (!since.isBefore(today)) {
+			log.debug("Late loans partition {} already processed for {}", name, today);
+			return;
+		}
+		
+		long loans = notifyInChunks(name, "newly late", today,
+				after -> loanService.getNewlyLateLoansAfter(since, today, partition, after, chunkSize));
+		if (reminderDays > 0) {
+			LocalDate notifiedUntil = today.minusDays(reminderDays);
+			loans += notifyInChunks(name, "reminder", today,
+					after -> loanService.getLateLoansToRemindAfter(notifiedUntil, partition, after, chunkSize));
+		}
+		
+		transactions.executeWithoutResult(status -> watermarks.save(JobWatermark.builder().name(name)
+				.watermark(today).updatedAt(LocalDateTime.now()).build()));
+		
+		log.info("Late loans {} finished: {} loans notified, due dates from {} to {}", name, loans, since, today);
+	}
+	
+	/*
+	 * Percorre os empréstimos em blocos de tamanho fixo, lendo só o e-mail do
+	 * cliente, para que a memória não cresça com o volume de atrasos; o envio
+	 * fica com o OutboxRelay.
+	 */
+	private long notifyInChunks(String lease, String phase, LocalDate today,
+			Function<Long, List<LateLoanView>> nextChunk) {
+		Timer chunkTimer = meterRegistry.timer("library.late.loans.chunk");
+		Long after = 0L;
+		int chunks = 0;
+		long loans = 0;
+		List<LateLoanView> lateLoans;
+		
+		do {
+			if (!leases.tryAcquire(lease, leaseTtl())) {
+				throw new LeaseLostException(lease);
+			}
+			Timer.Sample sample = Timer.start(meterRegistry);
+			List<LateLoanView> chunk = new ArrayList<>();
+			Long from = after;
+			int enqueued = transactions.execute(status -> {
+				chunk.addAll(nextChunk.apply(from));
+				if (chunk.isEmpty()) {
+					return 0;
+				}
+				List<Long> ids = new ArrayList<>(chunk.size());
+				for (LateLoanView loan : chunk) {
+					ids.add(loan.getId());
+				}
+				loanService.markLateNotified(ids, today);
+				return outbox.lateLoans(chunk, today, mensagem);
+			});
+			lateLoans = chunk;
+			if (lateLoans.isEmpty()) {
+				break;
+			}
+			
+			after = lateLoans.get(lateLoans.size() - 1).getId();
+			chunks++;
+			loans += lateLoans.size();
+			sample.stop(chunkTimer);
+			meterRegistry.counter("library.late.loans.processed").increment(lateLoans.size());
+			meterRegistry.counter("library.late.loans.emails").increment(enqueued);
+			log.info("Late loans {} {} chunk {} processed: {} loans, {} emails enqueued ({} loans so far)", lease,
+					phase, chunks, lateLoans.size(), enqueued, loans);
+		} while (lateLoans.size() == chunkSize);
+		
+		return loans;
+	}
+	
+	private Duration leaseTtl() {
+		return Duration.ofMillis(leaseTtlMs);
+	}
+	
+	/*
+	 * O lease expirou durante o processamento (pausa longa, banco lento) e outra
+	 * réplica pode ter assumido: a partição é abandonada sem avançar a marca
+	 * d'água.
+	 */
+	private static class LeaseLostException extends RuntimeException {
+		
+		private static final long serialVersionUID = 1L;
 		
-		emailService.sendEmails(mensagem, mailList);
+		LeaseLostException(String lease) {
+			super("lease " + lease + " lost");
+		}
 	}
 }
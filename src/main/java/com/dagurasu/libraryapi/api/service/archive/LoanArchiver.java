@@ -0,0 +1,86 @@
+package com.dagurasu.libraryapi.api.service.archive;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.dagurasu.libraryapi.api.model.repository.LoanRepository;
+import com.dagurasu.libraryapi.api.service.lease.JobLeases;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Move os empréstimos devolvidos há mais de retention-days para loan_archive,
+ * em lotes com uma transação curta cada, para que a tabela loan guarde só os
+ * empréstimos abertos e o histórico recente. As listagens do LoanService
+ * continuam cobrindo as duas tabelas.
+ */
+@Slf4j
+@Component
+public class LoanArchiver {
+
+	static final String ARCHIVE_LEASE = "loan-archive";
+
+	private final LoanRepository repository;
+	private final JobLeases leases;
+	private final TransactionOperations transactions;
+	private final MeterRegistry meterRegistry;
+	private final int retentionDays;
+	private final int batchSize;
+	private final Duration leaseTtl;
+
+	public LoanArchiver(LoanRepository repository, JobLeases leases, TransactionOperations transactions,
+			MeterRegistry meterRegistry, @Value("${application.loans.archive.retention-days:365}") int retentionDays,
+			@Value("${application.loans.archive.batch-size:1000}") int batchSize,
+			@Value("${application.jobs.lease.ttl-ms:600000}") long leaseTtlMs) {
+		this.repository = repository;
+		this.leases = leases;
+		this.transactions = transactions;
+		this.meterRegistry = meterRegistry;
+		this.retentionDays = retentionDays;
+		this.batchSize = batchSize;
+		this.leaseTtl = Duration.ofMillis(leaseTtlMs);
+	}
+
+	@Scheduled(cron = "${application.loans.archive.cron:0 30 2 * * ?}")
+	public void archiveScheduled() {
+		archive(LocalDate.now());
+	}
+
+	/*
+	 * Retorna quantos empréstimos foram movidos. Um lote em que parte dos ids foi
+	 * reaberta no meio do caminho move menos linhas, mas não encerra a rodada.
+	 */
+	public long archive(LocalDate today) {
+		if (retentionDays <= 0 || !leases.tryAcquire(ARCHIVE_LEASE, leaseTtl)) {
+			return 0;
+		}
+		LocalDate cutoff = today.minusDays(retentionDays);
+		long archived = 0;
+		try {
+			List<Long> ids;
+			do {
+				ids = repository.findArchivableIds(cutoff, PageRequest.of(0, batchSize));
+				if (ids.isEmpty()) {
+					break;
+				}
+				List<Long> batch = ids;
+				int moved = transactions.execute(status -> repository.archive(batch, LocalDateTime.now()));
+				archived += moved;
+				meterRegistry.counter("library.loans.archived").increment(moved);
+			} while (ids.size() == batchSize && leases.tryAcquire(ARCHIVE_LEASE, leaseTtl));
+		} finally {
+			leases.release(ARCHIVE_LEASE);
+		}
+		log.info("Loan archive finished: {} loans returned before {} moved to loan_archive", archived, cutoff);
+		return archived;
+	}
+}
@@ -0,0 +1,67 @@
+package com.dagurasu.libraryapi.api.service.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Conjunto fixo de locks indexado pelo hash da chave. Chaves diferentes quase
+ * sempre caem em locks diferentes e seguem em paralelo; a mesma chave é
+ * sempre serializada.
+ */
+public class StripedLock {
+
+	private final ReentrantLock[] stripes;
+	private final int mask;
+
+	public StripedLock(int stripes) {
+		int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.stripes = new ReentrantLock[size];
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+	}
+
+	public Lock get(Object key) {
+		return stripes[index(key)];
+	}
+
+	/**
+	 * Trava os locks de todas as chaves sempre em ordem crescente de faixa, para
+	 * que dois lotes com chaves em comum não entrem em deadlock.
+	 */
+	public List<Lock> lockAll(Collection<?> keys) {
+		TreeSet<Integer> indexes = new TreeSet<>();
+		for (Object key : keys) {
+			indexes.add(index(key));
+		}
+		List<Lock> locks = new ArrayList<>(indexes.size());
+		for (int index : indexes) {
+			stripes[index].lock();
+			locks.add(stripes[index]);
+		}
+		return locks;
+	}
+
+	public void unlockAll(List<Lock> locks) {
+		for (int i = locks.size() - 1; i >= 0; i--) {
+			locks.get(i).unlock();
+		}
+	}
+
+	public int size() {
+		return stripes.length;
+	}
+
+	int index(Object key) {
+		int hash = key == null ? 0 : key.hashCode();
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		return hash & mask;
+	}
+}
@@ -0,0 +1,59 @@
+package com.dagurasu.libraryapi.api.service.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limitador de taxa por balde de fichas: acumula até {@code capacity} fichas,
+ * repostas continuamente a {@code permitsPerSecond}. Cada envio consome uma.
+ */
+public class TokenBucket {
+
+	private final double capacity;
+	private final double permitsPerNano;
+	private final LongSupplier nanoTime;
+
+	private double tokens;
+	private long lastRefill;
+
+	public TokenBucket(double permitsPerSecond, double capacity) {
+		this(permitsPerSecond, capacity, System::nanoTime);
+	}
+
+	TokenBucket(double permitsPerSecond, double capacity, LongSupplier nanoTime) {
+		if (permitsPerSecond <= 0 || capacity < 1) {
+			throw new IllegalArgumentException("Rate and capacity must be positive.");
+		}
+		this.capacity = capacity;
+		this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.nanoTime = nanoTime;
+		this.tokens = capacity;
+		this.lastRefill = nanoTime.getAsLong();
+	}
+
+	public boolean tryAcquire() {
+		return reserve() == 0;
+	}
+
+	public void acquire() throws InterruptedException {
+		long waitNanos;
+		while ((waitNanos = reserve()) > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	/**
+	 * Consome uma ficha e retorna zero, ou retorna quantos nanossegundos faltam
+	 * para a próxima ficha ficar disponível.
+	 */
+	private synchronized long reserve() {
+		long now = nanoTime.getAsLong();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+		lastRefill = now;
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return Math.max(1, (long) Math.ceil((1 - tokens) / permitsPerNano));
+	}
+}
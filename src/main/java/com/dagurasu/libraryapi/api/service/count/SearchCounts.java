@@ -0,0 +1,68 @@
+package com.dagurasu.libraryapi.api.service.count;
+
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Totais aproximados das buscas paginadas. O count de cada filtro normalizado
+ * fica em cache por ttl-ms, e a listagem só pede ao banco a página com uma
+ * linha a mais. O total devolvido é ajustado pelo que a própria página
+ * mostra. Na última página ele é exato e atualiza o cache sem contar nada.
+ */
+@Component
+public class SearchCounts implements MeterBinder {
+
+	public static final String CACHE = "searchCounts";
+
+	private final Cache<String, Long> counts;
+
+	public SearchCounts(@Value("${application.search.count.ttl-ms:60000}") long ttlMs,
+			@Value("${application.search.count.max-size:10000}") long maxSize) {
+		this.counts = Caffeine.newBuilder().expireAfterWrite(Duration.ofMillis(ttlMs)).maximumSize(maxSize)
+				.recordStats().build();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, counts, CACHE);
+	}
+
+	/* filtro ausente e filtro vazio caem na mesma chave */
+	public static String key(String search, String... values) {
+		StringJoiner key = new StringJoiner("\u001f", search + ":", "");
+		for (String value : values) {
+			key.add(value == null ? "" : value);
+		}
+		return key.toString();
+	}
+
+	public <T> Page<T> page(String key, Slice<T> slice, LongSupplier count) {
+		Pageable pageable = slice.getPageable();
+		if (pageable.isUnpaged()) {
+			return new PageImpl<>(slice.getContent());
+		}
+		long seen = pageable.getOffset() + slice.getNumberOfElements();
+		if (!slice.hasNext() && (slice.hasContent() || pageable.getOffset() == 0)) {
+			counts.put(key, seen);
+			return new PageImpl<>(slice.getContent(), pageable, seen);
+		}
+		long cached = counts.get(key, k -> count.getAsLong());
+		long total = slice.hasNext() ? Math.max(cached, seen + 1) : Math.min(cached, pageable.getOffset());
+		return new PageImpl<>(slice.getContent(), pageable, total);
+	}
+}
@@ -0,0 +1,164 @@
+package com.dagurasu.libraryapi.api.service.dataset;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.LongFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.dagurasu.libraryapi.api.model.entity.LoanStatus;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gera livros e empréstimos sintéticos direto no banco, em lotes JDBC com uma
+ * transação por lote, sem passar pelo JPA. A massa é determinística para a
+ * mesma semente e tem a cara da produção: poucos títulos e clientes
+ * concentram os empréstimos, o histórico cresce em ordem de data e parte dos
+ * abertos está atrasada, com uma cauda longa de atraso.
+ */
+@Slf4j
+@Component
+public class DatasetGenerator {
+
+	private static final String[] WORDS = { "Amor", "Mar", "Noite", "Sombra", "Cidade", "Rio", "Tempo", "Guerra",
+			"Jardim", "Segredo", "Caminho", "Sol", "Memória", "Vento", "Casa", "Livro", "Pedra", "Fogo", "Ilha",
+			"Silêncio", "Viagem", "Estrela", "Lua", "Sertão", "Destino", "Espelho", "Inverno", "Carta", "Porto",
+			"Montanha", "Floresta", "Sonho" };
+
+	private static final String INSERT_BOOK = "insert into book (title, author, isbn, version) values (?, ?, ?, 0)";
+
+	private static final String INSERT_LOAN = "insert into loan (customer, customer_email, id_book, loan_date, "
+			+ "due_date, returned, status, open_book_id, version) values (?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+	private final JdbcTemplate jdbc;
+	private final TransactionOperations transactions;
+	private final int loanDays;
+
+	public DatasetGenerator(JdbcTemplate jdbc, TransactionOperations transactions,
+			@Value("${application.loans.period-days:3}") int loanDays) {
+		this.jdbc = jdbc;
+		this.transactions = transactions;
+		this.loanDays = loanDays;
+	}
+
+	public static String isbn(long ordinal) {
+		return String.format("978%010d", ordinal);
+	}
+
+	public static String customer(long rank) {
+		return "customer-" + rank;
+	}
+
+	public static String author(long rank) {
+		return "Author " + rank;
+	}
+
+	/* exige o catalogo vazio, para que os livros gerados tenham ids contiguos */
+	public Result generate(DatasetSpec spec) {
+		Long existing = jdbc.queryForObject("select count(*) from book", Long.class);
+		if (existing != null && existing > 0) {
+			throw new IllegalStateException("Dataset generator expects an empty catalog, found " + existing + " books");
+		}
+		long start = System.currentTimeMillis();
+		SplittableRandom random = new SplittableRandom(spec.getSeed());
+		LocalDate today = LocalDate.now();
+
+		insertBooks(spec, random.split());
+		long firstBookId = jdbc.queryForObject("select min(id) from book", Long.class);
+		insertLoans(spec, firstBookId, random.split(), today);
+		analyze();
+
+		long overdue = jdbc.queryForObject("select count(*) from loan where status = ? and due_date < ?", Long.class,
+				LoanStatus.OPEN.name(), Date.valueOf(today));
+		Result result = new Result(firstBookId, spec.getBooks(), spec.getLoans(), spec.getOpenLoans(), overdue);
+		log.info("Dataset generated in {} ms: {}", System.currentTimeMillis() - start, result);
+		return result;
+	}
+
+	private void insertBooks(DatasetSpec spec, SplittableRandom random) {
+		ZipfSampler authors = new ZipfSampler(Math.max(1, spec.getBooks() / 10), spec.getBookSkew());
+		insert(INSERT_BOOK, spec.getBooks(), spec.getBatchSize(), "books", i -> new Object[] {
+				WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + (i + 1),
+				author(authors.next(random)), isbn(i + 1) });
+	}
+
+	/*
+	 * Os devolvidos vêm primeiro, com a data crescendo junto com o id; os abertos
+	 * depois, um por livro, sorteados pela popularidade e deslocados para o
+	 * próximo livro livre quando o sorteado já está emprestado.
+	 */
+	private void insertLoans(DatasetSpec spec, long firstBookId, SplittableRandom random, LocalDate today) {
+		ZipfSampler books = new ZipfSampler(spec.getBooks(), spec.getBookSkew());
+		ZipfSampler customers = new ZipfSampler(spec.getCustomers(), spec.getCustomerSkew());
+		long open = spec.getOpenLoans();
+		long returned = spec.getLoans() - open;
+		int historyDays = spec.getHistoryDays();
+
+		insert(INSERT_LOAN, returned, spec.getBatchSize(), "returned loans", i -> {
+			LocalDate loanDate = today.minusDays(historyDays - i * historyDays / returned);
+			return loan(customers.next(random), firstBookId + books.next(random) - 1, loanDate, LoanStatus.RETURNED);
+		});
+
+		BitSet taken = new BitSet(spec.getBooks());
+		insert(INSERT_LOAN, open, spec.getBatchSize(), "open loans", i -> {
+			int rank = taken.nextClearBit(books.next(random) - 1);
+			if (rank >= spec.getBooks()) {
+				rank = taken.nextClearBit(0);
+			}
+			taken.set(rank);
+			LocalDate loanDate = today.minusDays(random.nextInt(loanDays + 1));
+			if (random.nextDouble() < spec.getOverdueRatio()) {
+				long late = 1 + (long) (-Math.log(1 - random.nextDouble()) * spec.getMeanLateDays());
+				loanDate = today.minusDays(loanDays + Math.min(late, historyDays));
+			}
+			return loan(customers.next(random), firstBookId + rank, loanDate, LoanStatus.OPEN);
+		});
+	}
+
+	private Object[] loan(int customer, long bookId, LocalDate loanDate, LoanStatus status) {
+		boolean returned = status == LoanStatus.RETURNED;
+		return new Object[] { customer(customer), customer(customer) + "@mail.com", bookId, Date.valueOf(loanDate),
+				Date.valueOf(loanDate.plusDays(loanDays)), returned, status.name(), returned ? null : bookId };
+	}
+
+	private void insert(String sql, long rows, int batchSize, String what, LongFunction<Object[]> row) {
+		List<Object[]> batch = new ArrayList<>(batchSize);
+		long progressEvery = (long) batchSize * 100;
+		for (long i = 0; i < rows; i++) {
+			batch.add(row.apply(i));
+			if (batch.size() == batchSize || i == rows - 1) {
+				transactions.executeWithoutResult(status -> jdbc.batchUpdate(sql, batch));
+				batch.clear();
+			}
+			if ((i + 1) % progressEvery == 0) {
+				log.info("Dataset: {} of {} {}", i + 1, rows, what);
+			}
+		}
+	}
+
+	/* atualiza as estatisticas do otimizador, que no H2 so mudam com ANALYZE */
+	private void analyze() {
+		String database = jdbc.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+		if ("H2".equals(database)) {
+			jdbc.execute("analyze");
+		}
+	}
+
+	@lombok.Value
+	public static class Result {
+		long firstBookId;
+		int books;
+		long loans;
+		long openLoans;
+		long overdueLoans;
+	}
+}
@@ -0,0 +1,58 @@
+package com.dagurasu.libraryapi.api.service.dataset;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Perfil dataset: gera a massa na subida, antes de a aplicação ficar pronta,
+ * a partir das propriedades application.dataset.*. Com exit=true a aplicação
+ * encerra ao terminar, para popular um banco persistente como um comando:
+ *
+ * java -jar library-api.jar --spring.profiles.active=dataset
+ * --spring.datasource.url=jdbc:h2:file:./data/library
+ * --application.dataset.books=1000000 --application.dataset.loans=20000000
+ * --application.dataset.exit=true
+ */
+@Component
+@Profile("dataset")
+public class DatasetGeneratorRunner implements ApplicationRunner {
+
+	private final DatasetGenerator generator;
+	private final ConfigurableApplicationContext context;
+	private final DatasetSpec spec;
+	private final boolean exit;
+
+	public DatasetGeneratorRunner(DatasetGenerator generator, ConfigurableApplicationContext context,
+			@Value("${application.dataset.books:100000}") int books,
+			@Value("${application.dataset.loans:1000000}") long loans,
+			@Value("${application.dataset.customers:50000}") int customers,
+			@Value("${application.dataset.open-ratio:0.02}") double openRatio,
+			@Value("${application.dataset.overdue-ratio:0.3}") double overdueRatio,
+			@Value("${application.dataset.mean-late-days:15}") int meanLateDays,
+			@Value("${application.dataset.history-days:3650}") int historyDays,
+			@Value("${application.dataset.book-skew:1.0}") double bookSkew,
+			@Value("${application.dataset.customer-skew:0.8}") double customerSkew,
+			@Value("${application.dataset.seed:42}") long seed,
+			@Value("${application.dataset.batch-size:5000}") int batchSize,
+			@Value("${application.dataset.exit:false}") boolean exit) {
+		this.generator = generator;
+		this.context = context;
+		this.spec = DatasetSpec.builder().books(books).loans(loans).customers(customers).openRatio(openRatio)
+				.overdueRatio(overdueRatio).meanLateDays(meanLateDays).historyDays(historyDays).bookSkew(bookSkew)
+				.customerSkew(customerSkew).seed(seed).batchSize(batchSize).build();
+		this.exit = exit;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		generator.generate(spec);
+		if (exit) {
+			System.exit(SpringApplication.exit(context));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.dagurasu.libraryapi.api.service.dataset;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Parâmetros da massa gerada. Os expoentes de skew são os da distribuição
+ * de Zipf: 0 é uniforme, 1 concentra boa parte dos empréstimos nos primeiros
+ * livros e clientes do ranking.
+ */
+@Value
+@Builder(toBuilder = true)
+public class DatasetSpec {
+
+	@Builder.Default
+	int books = 100_000;
+
+	@Builder.Default
+	long loans = 1_000_000;
+
+	@Builder.Default
+	int customers = 50_000;
+
+	/* fracao dos emprestimos ainda abertos, limitada a um por livro */
+	@Builder.Default
+	double openRatio = 0.02;
+
+	/* fracao dos abertos ja vencidos; o atraso tem cauda exponencial */
+	@Builder.Default
+	double overdueRatio = 0.3;
+
+	@Builder.Default
+	int meanLateDays = 15;
+
+	/* profundidade do historico de devolvidos, em dias antes de hoje */
+	@Builder.Default
+	int historyDays = 3_650;
+
+	@Builder.Default
+	double bookSkew = 1.0;
+
+	@Builder.Default
+	double customerSkew = 0.8;
+
+	@Builder.Default
+	long seed = 42;
+
+	@Builder.Default
+	int batchSize = 5_000;
+
+	public long getOpenLoans() {
+		return Math.min(books, Math.round(loans * openRatio));
+	}
+}
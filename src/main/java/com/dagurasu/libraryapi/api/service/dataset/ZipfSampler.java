@@ -0,0 +1,30 @@
+package com.dagurasu.libraryapi.api.service.dataset;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Sorteia posições de 1 a n com peso 1/k^s, por busca binária na
+ * distribuição acumulada (8 bytes por posição).
+ */
+class ZipfSampler {
+
+	private final double[] cumulative;
+
+	ZipfSampler(int n, double exponent) {
+		cumulative = new double[n];
+		double total = 0;
+		for (int k = 1; k <= n; k++) {
+			total += 1 / Math.pow(k, exponent);
+			cumulative[k - 1] = total;
+		}
+		for (int i = 0; i < n; i++) {
+			cumulative[i] /= total;
+		}
+	}
+
+	int next(SplittableRandom random) {
+		int index = Arrays.binarySearch(cumulative, random.nextDouble());
+		return Math.min(cumulative.length, (index < 0 ? -index - 1 : index) + 1);
+	}
+}
@@ -0,0 +1,188 @@
+package com.dagurasu.libraryapi.api.service.imp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.dagurasu.libraryapi.api.dto.BookImportErrorDTO;
+import com.dagurasu.libraryapi.api.dto.BookImportResultDTO;
+import com.dagurasu.libraryapi.api.service.BookImportService;
+import com.dagurasu.libraryapi.api.service.importer.BookImportFormat;
+import com.dagurasu.libraryapi.api.service.importer.BookRow;
+import com.dagurasu.libraryapi.api.service.importer.BookRowReader;
+import com.dagurasu.libraryapi.exception.BusinessException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Importa livros em lotes: cada lote é deduplicado pelo ISBN, conferido contra
+ * o banco com uma única consulta e gravado com um batch JDBC na sua própria
+ * transação. A memória usada depende do tamanho do lote, não do arquivo.
+ */
+@Slf4j
+@Service
+public class BookImportServiceImpl implements BookImportService {
+
+	private static final String INSERT_BOOK = "insert into book (title, author, isbn, version) values (:title, :author, :isbn, 0)";
+	private static final String SELECT_EXISTING = "select isbn from book where isbn in (:isbns)";
+
+	private final NamedParameterJdbcTemplate jdbcTemplate;
+	private final TransactionOperations transactions;
+	private final Validator validator;
+	private final ObjectMapper objectMapper;
+	private final int batchSize;
+	private final int maxErrors;
+
+	public BookImportServiceImpl(NamedParameterJdbcTemplate jdbcTemplate, TransactionOperations transactions,
+			Validator validator, ObjectMapper objectMapper,
+			@Value("${application.books.import.batch-size:1000}") int batchSize,
+			@Value("${application.books.import.max-errors:1000}") int maxErrors) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactions = transactions;
+		this.validator = validator;
+		this.objectMapper = objectMapper;
+		this.batchSize = batchSize;
+		this.maxErrors = maxErrors;
+	}
+
+	@Override
+	public BookImportResultDTO importBooks(Reader reader, BookImportFormat format) {
+		BookImportResultDTO result = BookImportResultDTO.builder().errors(new ArrayList<>()).build();
+		Map<String, BookRow> batch = new LinkedHashMap<>();
+
+		try (BookRowReader rows = format.open(new BufferedReader(reader), objectMapper)) {
+			BookRow row;
+			while ((row = rows.next()) != null) {
+				result.setRead(result.getRead() + 1);
+				String error = row.getError() != null ? row.getError() : validate(row.getBook());
+				if (error == null && batch.containsKey(row.getBook().getIsbn())) {
+					error = "Isbn duplicado no arquivo.";
+				}
+				if (error != null) {
+					reject(result, row, error);
+					continue;
+				}
+
+				batch.put(row.getBook().getIsbn(), row);
+				if (batch.size() >= batchSize) {
+					flush(batch, result);
+				}
+			}
+			flush(batch, result);
+		} catch (IOException e) {
+			throw new BusinessException("Falha ao ler o arquivo de importação.");
+		}
+
+		result.getErrors().sort(Comparator.comparingLong(BookImportErrorDTO::getLine));
+		log.info("Book import finished: {} read, {} imported, {} rejected", result.getRead(), result.getImported(),
+				result.getRejected());
+		return result;
+	}
+
+	private void flush(Map<String, BookRow> batch, BookImportResultDTO result) {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		for (String isbn : existing(batch.keySet())) {
+			reject(result, batch.remove(isbn), "Isbn já cadastrado.");
+		}
+
+		if (!batch.isEmpty()) {
+			List<SqlParameterSource> params = new ArrayList<>(batch.size());
+			for (BookRow row : batch.values()) {
+				params.add(params(row.getBook()));
+			}
+			try {
+				transactions.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_BOOK,
+						params.toArray(new SqlParameterSource[params.size()])));
+			} catch (DataIntegrityViolationException e) {
+				insertOneByOne(batch, result);
+			}
+			if (!batch.isEmpty()) {
+				result.setImported(result.getImported() + batch.size());
+			}
+		}
+		batch.clear();
+	}
+
+	/*
+	 * O banco recusou o batch, em geral porque outro cadastro gravou um dos
+	 * ISBNs entre a conferência e o insert: o lote é refeito linha a linha e só
+	 * as linhas recusadas são rejeitadas, com o motivo.
+	 */
+	private void insertOneByOne(Map<String, BookRow> batch, BookImportResultDTO result) {
+		Iterator<BookRow> rows = batch.values().iterator();
+		while (rows.hasNext()) {
+			BookRow row = rows.next();
+			try {
+				transactions.executeWithoutResult(status -> jdbcTemplate.update(INSERT_BOOK, params(row.getBook())));
+			} catch (DataIntegrityViolationException e) {
+				if (e instanceof DuplicateKeyException || Constraints.violated(e, Constraints.BOOK_ISBN)) {
+					reject(result, row, "Isbn já cadastrado.");
+				} else {
+					log.warn("Book import row {} rejected by the database", row.getLine(), e);
+					reject(result, row, "Linha recusada pelo banco de dados.");
+				}
+				rows.remove();
+			}
+		}
+	}
+
+	private static SqlParameterSource params(BookDTO book) {
+		return new MapSqlParameterSource()
+				.addValue("title", book.getTitle())
+				.addValue("author", book.getAuthor())
+				.addValue("isbn", book.getIsbn());
+	}
+
+	private Set<String> existing(Set<String> isbns) {
+		return new HashSet<>(jdbcTemplate.queryForList(SELECT_EXISTING, new MapSqlParameterSource("isbns", isbns),
+				String.class));
+	}
+
+	private String validate(BookDTO book) {
+		Set<ConstraintViolation<BookDTO>> violations = validator.validate(book);
+		if (violations.isEmpty()) {
+			return null;
+		}
+		Set<String> messages = new TreeSet<>();
+		for (ConstraintViolation<BookDTO> violation : violations) {
+			messages.add(violation.getPropertyPath() + ": " + violation.getMessage());
+		}
+		return String.join("; ", messages);
+	}
+
+	private void reject(BookImportResultDTO result, BookRow row, String message) {
+		result.setRejected(result.getRejected() + 1);
+		if (result.getErrors().size() < maxErrors) {
+			String isbn = row.getBook() != null ? row.getBook().getIsbn() : null;
+			result.getErrors().add(new BookImportErrorDTO(row.getLine(), isbn, message));
+		} else {
+			result.setErrorsTruncated(true);
+		}
+	}
+}
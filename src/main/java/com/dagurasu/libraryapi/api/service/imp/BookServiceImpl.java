@@ -1,42 +1,92 @@
 package com.dagurasu.libraryapi.api.service.imp;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.ExampleMatcher.StringMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.EscapeCharacter;
 import org.springframework.stereotype.Service;
 
 import com.dagurasu.libraryapi.api.model.entity.Book;
 import com.dagurasu.libraryapi.api.model.repository.BookRepository;
 import com.dagurasu.libraryapi.api.service.BookService;
+import com.dagurasu.libraryapi.api.service.count.SearchCounts;
 import com.dagurasu.libraryapi.exception.BusinessException;
 
 @Service
 public class BookServiceImpl implements BookService {
 
+	/*
+	 * Livros mudam pouco e são lidos em quase toda requisição. O cache é local
+	 * a cada réplica e só é invalidado pelas escritas feitas nela, então uma
+	 * entrada pode ficar atrás do banco até expirar: ele serve de corpo para
+	 * quem confere a versão antes (GET por id) e para leituras que toleram
+	 * atraso, nunca de base para escritas. Só resultados encontrados entram
+	 * no cache: a importação insere linhas novas direto por JDBC e não pode
+	 * esbarrar em uma ausência guardada.
+	 */
+	public static final String BOOKS_CACHE = "books";
+
 	private BookRepository repository;
+	private SearchCounts searchCounts;
 
-	public BookServiceImpl(BookRepository repository) {
+	public BookServiceImpl(BookRepository repository, SearchCounts searchCounts) {
 		this.repository = repository;
+		this.searchCounts = searchCounts;
 	}
 
+	/*
+	 * A consulta prévia dá a mensagem no caso comum; um cadastro concorrente do
+	 * mesmo isbn, em qualquer réplica, esbarra em uk_book_isbn no insert.
+	 */
 	@Override
 	public Book save(Book book) {
 		if (repository.existsByIsbn(book.getIsbn())) {
 			throw new BusinessException("Isbn já cadastrado.");
 		}
-		return repository.save(book);
+		try {
+			return repository.save(book);
+		} catch (DataIntegrityViolationException e) {
+			if (Constraints.violated(e, Constraints.BOOK_ISBN)) {
+				throw new BusinessException("Isbn já cadastrado.");
+			}
+			throw e;
+		}
 	}
 
 	@Override
+	@Cacheable(cacheNames = BOOKS_CACHE, unless = "#result == null")
 	public Optional<Book> getById(Long id) {
 		return this.repository.findById(id);
 	}
 
 	@Override
+	@CachePut(cacheNames = BOOKS_CACHE, key = "#id", unless = "#result == null")
+	public Optional<Book> getCurrentById(Long id) {
+		return this.repository.findById(id);
+	}
+
+	@Override
+	public Optional<Long> getVersion(Long id) {
+		return this.repository.findVersionById(id);
+	}
+
+	@Override
+	@CacheEvict(cacheNames = BOOKS_CACHE, key = "#book.id")
 	public void delete(Book book) {
 		if (book == null || book.getId() == null) {
 			throw new IllegalArgumentException("Book id can't be null.");
@@ -45,6 +95,7 @@ public class BookServiceImpl implements BookService {
 	}
 
 	@Override
+	@CacheEvict(cacheNames = BOOKS_CACHE, key = "#book.id")
 	public Book update(Book book) {
 		if (book == null || book.getId() == null) {
 			throw new IllegalArgumentException("Book id can't be null.");
@@ -52,21 +103,85 @@ public class BookServiceImpl implements BookService {
 		return this.repository.save(book);
 	}
 
+	/*
+	 * Um único UPDATE só com as colunas informadas; a versão, quando vem do
+	 * If-Match, entra no WHERE.
+	 */
+	@Override
+	@CacheEvict(cacheNames = BOOKS_CACHE, key = "#id")
+	public boolean patch(Long id, Long version, String title, String author) {
+		if (id == null) {
+			throw new IllegalArgumentException("Book id can't be null.");
+		}
+		return repository.patch(id, version, title, author) > 0;
+	}
+
 	@Override
 	public Page<Book> find(Book filter, Pageable pageRequest) {
-		
-		Example<Book> example = Example.of(filter, 
+		return repository.findAll(example(filter), pageRequest);
+	}
+
+	/*
+	 * Sem o count: a mesma busca por padrões da paginação por cursor, a partir
+	 * do id 0, lê uma linha a mais.
+	 */
+	@Override
+	public Slice<Book> findSlice(Book filter, Pageable pageRequest) {
+		return repository.findByPatternsAfter(0L, containing(filter.getTitle()), containing(filter.getAuthor()),
+				containing(filter.getIsbn()), pageRequest);
+	}
+
+	@Override
+	public Page<Book> findApproximate(Book filter, Pageable pageRequest) {
+		Slice<Book> slice = findSlice(filter, pageRequest);
+		String key = SearchCounts.key("books", lowerCase(filter.getTitle()), lowerCase(filter.getAuthor()),
+				lowerCase(filter.getIsbn()));
+		return searchCounts.page(key, slice, () -> repository.count(example(filter)));
+	}
+
+	@Override
+	public Slice<Book> findAfter(Book filter, Long afterId, int size) {
+		return repository.findByPatternsAfter(afterId, containing(filter.getTitle()), containing(filter.getAuthor()),
+				containing(filter.getIsbn()), PageRequest.of(0, size, Sort.by("id")));
+	}
+
+	/*
+	 * Sem cache: quem busca por isbn vai gravar um empréstimo, e um livro já
+	 * excluído em outra réplica não pode continuar aparecendo.
+	 */
+	@Override
+	public Optional<Book> getBookByIsbn(String isbn) {
+		return repository.findByIsbn(isbn);
+	}
+
+	@Override
+	public Map<String, Book> getBooksByIsbn(Collection<String> isbns) {
+		Map<String, Book> books = new HashMap<>();
+		if (!isbns.isEmpty()) {
+			for (Book book : repository.findByIsbnIn(isbns)) {
+				books.putIfAbsent(book.getIsbn(), book);
+			}
+		}
+		return books;
+	}
+
+	private static Example<Book> example(Book filter) {
+		return Example.of(filter, 
 					ExampleMatcher.matching()
 							.withIgnoreCase()
 							.withIgnoreNullValues()
 							.withStringMatcher(StringMatcher.CONTAINING));
-		
-		return repository.findAll(example , pageRequest);
 	}
 
-	@Override
-	public Optional<Book> getBookByIsbn(String isbn) {
-		return repository.findByIsbn(isbn);
+	private static String lowerCase(String value) {
+		return value == null ? null : value.toLowerCase(Locale.ROOT);
+	}
+
+	private static String containing(String value) {
+		if (value == null) {
+			return null;
+		}
+		return "%" + EscapeCharacter.DEFAULT.escape(value.toLowerCase(Locale.ROOT)) + "%";
 	}
 
 }
@@ -0,0 +1,39 @@
+package com.dagurasu.libraryapi.api.service.imp;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Restrições do banco que os serviços traduzem em erros de negócio. O nome
+ * vem do Hibernate quando a escrita passou por ele e da mensagem do driver
+ * nas escritas por JDBC; o H2 devolve o nome do índice, que começa pelo da
+ * restrição.
+ */
+final class Constraints {
+
+	static final String BOOK_ISBN = "uk_book_isbn";
+	static final String LOAN_OPEN_BOOK_ID = "uk_loan_open_book_id";
+	static final String LOAN_BOOK = "fk_loan_book";
+
+	private Constraints() {
+	}
+
+	static boolean violated(DataIntegrityViolationException e, String constraint) {
+		String name = constraint.toLowerCase(Locale.ROOT);
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			String violated = null;
+			if (cause instanceof ConstraintViolationException) {
+				violated = ((ConstraintViolationException) cause).getConstraintName();
+			} else if (cause instanceof SQLException) {
+				violated = cause.getMessage();
+			}
+			if (violated != null && violated.toLowerCase(Locale.ROOT).contains(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
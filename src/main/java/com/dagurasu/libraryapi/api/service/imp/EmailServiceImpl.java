@@ -1,38 +1,233 @@
 package com.dagurasu.libraryapi.api.service.imp;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.mail.Address;
+import javax.mail.SendFailedException;
+import javax.mail.internet.InternetAddress;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import com.dagurasu.libraryapi.api.service.EmailDispatchResult;
 import com.dagurasu.libraryapi.api.service.EmailService;
+import com.dagurasu.libraryapi.api.service.concurrent.TokenBucket;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import com.sun.mail.smtp.SMTPSenderFailedException;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Envia os e-mails em lotes de destinatários, concorrentemente em um pool
+ * limitado, respeitando uma taxa máxima de lotes por segundo. Os
+ * destinatários vão em cópia oculta, para que um não veja o endereço dos
+ * outros. Falhas transitórias (4xx, conexão) são repetidas com espera
+ * exponencial; respostas 5xx são permanentes. Endereços recusados pelo
+ * servidor são reportados como falha e o restante do lote é reenviado sem eles.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class EmailServiceImpl implements EmailService {
 
-	@Value("${application.mail.default.remetent}")
-	private String remetent;
-
 	private final JavaMailSender javaMailSender;
+	private final String remetent;
+	private final int batchSize;
+	private final int maxAttempts;
+	private final long backoffMillis;
+	private final TokenBucket rateLimiter;
+	private final ThreadPoolExecutor executor;
+
+	public EmailServiceImpl(JavaMailSender javaMailSender,
+			@Value("${application.mail.default.remetent}") String remetent,
+			@Value("${application.mail.dispatch.batch-size:50}") int batchSize,
+			@Value("${application.mail.dispatch.workers:4}") int workers,
+			@Value("${application.mail.dispatch.rate-per-second:5}") double ratePerSecond,
+			@Value("${application.mail.dispatch.max-attempts:3}") int maxAttempts,
+			@Value("${application.mail.dispatch.backoff-ms:1000}") long backoffMillis) {
+		this.javaMailSender = javaMailSender;
+		this.remetent = remetent;
+		this.batchSize = batchSize;
+		this.maxAttempts = maxAttempts;
+		this.backoffMillis = backoffMillis;
+		this.rateLimiter = new TokenBucket(ratePerSecond, Math.max(1, workers));
+		this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(workers * 2), new CustomizableThreadFactory("mail-dispatch-"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
 
 	@Override
-	public void sendEmails(String mensagem, List<String> mailList) {
+	public EmailDispatchResult sendEmails(String subject, String mensagem, List<String> mailList) {
+
+		List<Future<List<String>>> futures = new ArrayList<>();
+		List<List<String>> batches = new ArrayList<>();
+		for (int i = 0; i < mailList.size(); i += batchSize) {
+			List<String> batch = new ArrayList<>(mailList.subList(i, Math.min(mailList.size(), i + batchSize)));
+			batches.add(batch);
+			futures.add(executor.submit(() -> send(subject, mensagem, batch)));
+		}
+
+		int sent = 0;
+		List<String> failedRecipients = new ArrayList<>();
+		for (int i = 0; i < futures.size(); i++) {
+			List<String> failed = failedOf(futures.get(i), batches.get(i));
+			sent += batches.get(i).size() - failed.size();
+			failedRecipients.addAll(failed);
+		}
+
+		log.info("Mail dispatch finished: {} sent, {} failed in {} batches", sent, failedRecipients.size(),
+				batches.size());
+		return new EmailDispatchResult(sent, failedRecipients.size(), failedRecipients);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Envia o lote e devolve os destinatários que não receberam a mensagem.
+	 */
+	private List<String> send(String subject, String mensagem, List<String> batch) throws InterruptedException {
+		List<String> pending = new ArrayList<>(batch);
+		List<String> failed = new ArrayList<>();
 
-		String[] mails = mailList.toArray(new String[mailList.size()]);
-		
+		for (int attempt = 1; !pending.isEmpty();) {
+			rateLimiter.acquire();
+			try {
+				javaMailSender.send(message(subject, mensagem, pending));
+				return failed;
+			} catch (MailException e) {
+				SendFailedException failure = sendFailure(e);
+				if (failure != null && failure.getInvalidAddresses() != null) {
+					Set<String> invalid = addresses(failure.getInvalidAddresses());
+					Set<String> delivered = addresses(failure.getValidSentAddresses());
+					List<String> rejected = new ArrayList<>();
+					List<String> remaining = new ArrayList<>();
+					for (String recipient : pending) {
+						String address = normalize(recipient);
+						if (invalid.contains(address)) {
+							rejected.add(recipient);
+						} else if (!delivered.contains(address)) {
+							remaining.add(recipient);
+						}
+					}
+					if (!rejected.isEmpty()) {
+						// os endereços recusados não entram mais; o restante é reenviado sem eles
+						log.warn("Mail server rejected {} recipient(s): {}", rejected.size(), rejected);
+						failed.addAll(rejected);
+						pending = remaining;
+						continue;
+					}
+				}
+				if (!isTransient(e, failure) || attempt >= maxAttempts) {
+					log.warn("Failed to send mail batch of {} recipients after {} attempt(s)", pending.size(), attempt, e);
+					failed.addAll(pending);
+					return failed;
+				}
+				long wait = backoffMillis << (attempt - 1);
+				log.debug("Transient failure sending mail batch, retrying in {} ms", wait, e);
+				TimeUnit.MILLISECONDS.sleep(wait);
+				attempt++;
+			}
+		}
+		return failed;
+	}
+
+	private SimpleMailMessage message(String subject, String mensagem, List<String> recipients) {
 		SimpleMailMessage mailMessage = new SimpleMailMessage();
-		
+
 		mailMessage.setFrom(remetent);
-		mailMessage.setSubject("Livro com empréstimo atrasado");
+		mailMessage.setSubject(subject);
 		mailMessage.setText(mensagem);
-		mailMessage.setTo(mails);
+		mailMessage.setBcc(recipients.toArray(new String[recipients.size()]));
+		return mailMessage;
+	}
+
+	/**
+	 * Falhas de autenticação e de montagem da mensagem são permanentes, assim
+	 * como as recusas do servidor ({@link SendFailedException}), exceto quando
+	 * ele responde com um código 4xx, que pede para tentar mais tarde. Falhas
+	 * sem resposta do servidor (conexão, timeout) são transitórias.
+	 */
+	private static boolean isTransient(MailException e, SendFailedException failure) {
+		if (e instanceof MailAuthenticationException || e instanceof MailParseException
+				|| e instanceof MailPreparationException) {
+			return false;
+		}
+		if (failure == null) {
+			return true;
+		}
+		int returnCode = -1;
+		if (failure instanceof SMTPSendFailedException) {
+			returnCode = ((SMTPSendFailedException) failure).getReturnCode();
+		} else if (failure instanceof SMTPSenderFailedException) {
+			returnCode = ((SMTPSenderFailedException) failure).getReturnCode();
+		}
+		return returnCode >= 400 && returnCode < 500;
+	}
 
-		javaMailSender.send(mailMessage);
+	/**
+	 * A {@link SendFailedException} do JavaMail por trás da falha, se houver.
+	 */
+	private static SendFailedException sendFailure(MailException e) {
+		List<Throwable> causes = new ArrayList<>();
+		if (e instanceof MailSendException) {
+			causes.addAll(Arrays.asList(((MailSendException) e).getMessageExceptions()));
+		}
+		causes.add(e.getCause());
+		for (Throwable cause : causes) {
+			for (Throwable t = cause; t != null; t = t.getCause()) {
+				if (t instanceof SendFailedException) {
+					return (SendFailedException) t;
+				}
+			}
+		}
+		return null;
 	}
 
+	private static Set<String> addresses(Address[] addresses) {
+		Set<String> result = new HashSet<>();
+		if (addresses != null) {
+			for (Address address : addresses) {
+				result.add(normalize(address instanceof InternetAddress ? ((InternetAddress) address).getAddress()
+						: address.toString()));
+			}
+		}
+		return result;
+	}
+
+	private static String normalize(String address) {
+		return address.trim().toLowerCase(Locale.ROOT);
+	}
+
+	private static List<String> failedOf(Future<List<String>> future, List<String> batch) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return batch;
+		} catch (ExecutionException e) {
+			log.warn("Mail batch failed", e.getCause());
+			return batch;
+		}
+	}
 }
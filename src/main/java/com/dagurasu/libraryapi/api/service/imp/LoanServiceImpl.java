@@ -1,36 +1,90 @@
 package com.dagurasu.libraryapi.api.service.imp;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Optional;
+import java.util.concurrent.locks.Lock;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
+import com.dagurasu.libraryapi.api.dto.LoanBatchItemDTO;
 import com.dagurasu.libraryapi.api.dto.LoanFilterDTO;
 import com.dagurasu.libraryapi.api.model.entity.Book;
 import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.projection.LateLoanView;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
 import com.dagurasu.libraryapi.api.model.repository.LoanRepository;
+import com.dagurasu.libraryapi.api.service.LoanPartition;
 import com.dagurasu.libraryapi.api.service.LoanService;
+import com.dagurasu.libraryapi.api.service.concurrent.StripedLock;
+import com.dagurasu.libraryapi.api.service.count.SearchCounts;
+import com.dagurasu.libraryapi.api.service.outbox.NotificationOutbox;
 import com.dagurasu.libraryapi.exception.BusinessException;
 
 @Service
 public class LoanServiceImpl implements LoanService {
 
+	private static final int LOCK_STRIPES = 256;
+
 	private LoanRepository repository;
+	private NotificationOutbox outbox;
+	private TransactionOperations transactions;
+	private SearchCounts searchCounts;
+	private int loanDays;
+	private StripedLock bookLocks = new StripedLock(LOCK_STRIPES);
 
-	public LoanServiceImpl(LoanRepository repository) {
+	public LoanServiceImpl(LoanRepository repository, NotificationOutbox outbox, TransactionOperations transactions,
+			SearchCounts searchCounts, @Value("${application.loans.period-days:3}") int loanDays) {
 		this.repository = repository;
-		
+		this.outbox = outbox;
+		this.transactions = transactions;
+		this.searchCounts = searchCounts;
+		this.loanDays = loanDays;
 	}
 	
+	/*
+	 * O lock por livro serializa verificação e insert dentro da instância; entre
+	 * instâncias, a restrição única de open_book_id rejeita o segundo empréstimo.
+	 * A transação fica dentro do lock e inclui a notificação do outbox.
+	 */
 	@Override
 	public Loan save(Loan loan) {
-		if(repository.existsByBookAndNotReturned(loan.getBook())) {
-			throw new BusinessException("Book already loaned");
+		if (loan.getBook() == null || loan.getBook().getId() == null) {
+			throw new IllegalArgumentException("Book id can't be null.");
+		}
+		setDueDate(loan);
+		Lock lock = bookLocks.get(loan.getBook().getId());
+		lock.lock();
+		try {
+			return transactions.execute(status -> {
+				if(repository.existsByBookAndNotReturned(loan.getBook())) {
+					throw new BusinessException("Book already loaned");
+				}
+				Loan saved = repository.save(loan);
+				outbox.loanCreated(saved);
+				return saved;
+			});
+		} catch (DataIntegrityViolationException e) {
+			throw alreadyLoaned(e);
+		} finally {
+			lock.unlock();
 		}
-		return repository.save(loan);
 	}
 
 	@Override
@@ -40,24 +94,229 @@ public class LoanServiceImpl implements LoanService {
 
 	@Override
 	public Loan update(Loan loan) {
-		return repository.save(loan);
+		try {
+			return transactions.execute(status -> {
+				Loan saved = repository.save(loan);
+				if (Boolean.TRUE.equals(saved.getReturned())) {
+					/* a versão só avança no flush, e ela entra na chave do aviso */
+					repository.flush();
+					outbox.loanReturned(saved);
+				}
+				return saved;
+			});
+		} catch (DataIntegrityViolationException e) {
+			throw alreadyLoaned(e);
+		}
 	}
 
+	/*
+	 * Devolução com um UPDATE direcionado, sem carregar e regravar a linha
+	 * inteira, seguido da leitura com o livro para o aviso no outbox. Os
+	 * updates só mudam empréstimos que ainda não estão no estado pedido; nos
+	 * demais a chamada não faz nada e só confere se o empréstimo existe.
+	 * Reabrir volta a ocupar o livro e pode esbarrar na restrição única de
+	 * open_book_id.
+	 */
 	@Override
-	public Page<Loan> find(LoanFilterDTO filterDTO, Pageable pageable) {
-		return repository.findByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(), pageable);
+	public boolean returnLoan(Long id, boolean returned) {
+		try {
+			return transactions.execute(status -> {
+				if (!returned) {
+					return repository.reopen(id, LocalDate.now().plusDays(loanDays)) > 0 || repository.existsById(id);
+				}
+				if (repository.markReturned(Collections.singleton(id)) == 0) {
+					return repository.existsById(id);
+				}
+				outbox.loansReturned(repository.findAllWithBookByIdIn(Collections.singleton(id)));
+				return true;
+			});
+		} catch (DataIntegrityViolationException e) {
+			throw alreadyLoaned(e);
+		}
 	}
 
+	/*
+	 * Lote de empréstimos: uma consulta de disponibilidade e um batch de inserts
+	 * na mesma transação, com os locks de todos os livros do lote. Se outra
+	 * instância ganhar a corrida no banco, o lote segue item a item.
+	 */
 	@Override
-	public Page<Loan> getLoansByBook(Book book, Pageable pageable) {
-		return repository.findByBook(book, pageable);
+	public List<LoanBatchItemDTO> saveAll(List<Loan> loans) {
+		LoanBatchItemDTO[] results = new LoanBatchItemDTO[loans.size()];
+		Map<Long, Integer> pending = new LinkedHashMap<>();
+		for (int i = 0; i < loans.size(); i++) {
+			Loan loan = loans.get(i);
+			if (loan.getBook() == null || loan.getBook().getId() == null) {
+				results[i] = LoanBatchItemDTO.failed(i, null, "Book not found for passed isbn");
+			} else if (pending.putIfAbsent(loan.getBook().getId(), i) != null) {
+				results[i] = LoanBatchItemDTO.failed(i, null, "Book already loaned");
+			}
+		}
+		if (pending.isEmpty()) {
+			return Arrays.asList(results);
+		}
+
+		List<Lock> locks = bookLocks.lockAll(pending.keySet());
+		try {
+			transactions.executeWithoutResult(status -> {
+				for (Long bookId : repository.findOpenBookIds(pending.keySet())) {
+					int i = pending.remove(bookId);
+					results[i] = LoanBatchItemDTO.failed(i, null, "Book already loaned");
+				}
+				List<Loan> batch = new ArrayList<>(pending.size());
+				for (int i : pending.values()) {
+					batch.add(setDueDate(loans.get(i)));
+				}
+				repository.insertAll(batch);
+				outbox.loansCreated(batch);
+			});
+			for (int i : pending.values()) {
+				results[i] = LoanBatchItemDTO.ok(i, loans.get(i).getId());
+			}
+		} catch (DataIntegrityViolationException e) {
+			if (!Constraints.violated(e, Constraints.LOAN_OPEN_BOOK_ID)) {
+				throw e;
+			}
+			for (int i : pending.values()) {
+				results[i] = saveOne(i, loans.get(i));
+			}
+		} finally {
+			bookLocks.unlockAll(locks);
+		}
+		return Arrays.asList(results);
+	}
+
+	@Override
+	public List<LoanBatchItemDTO> returnAll(List<Long> ids) {
+		LoanBatchItemDTO[] results = new LoanBatchItemDTO[ids.size()];
+		Set<Long> distinct = new HashSet<>(ids);
+		distinct.remove(null);
+		if (distinct.isEmpty()) {
+			for (int i = 0; i < ids.size(); i++) {
+				results[i] = LoanBatchItemDTO.failed(i, ids.get(i), "Loan not found");
+			}
+			return Arrays.asList(results);
+		}
+
+		transactions.executeWithoutResult(status -> {
+			Map<Long, Loan> found = new HashMap<>();
+			for (Loan loan : repository.findAllWithBookByIdIn(distinct)) {
+				found.put(loan.getId(), loan);
+			}
+
+			Map<Long, Loan> returning = new LinkedHashMap<>();
+			for (int i = 0; i < ids.size(); i++) {
+				Long id = ids.get(i);
+				Loan loan = found.get(id);
+				if (loan == null) {
+					results[i] = LoanBatchItemDTO.failed(i, id, "Loan not found");
+				} else if (Boolean.TRUE.equals(loan.getReturned()) || returning.putIfAbsent(id, loan) != null) {
+					results[i] = LoanBatchItemDTO.failed(i, id, "Loan already returned");
+				} else {
+					results[i] = LoanBatchItemDTO.ok(i, id);
+				}
+			}
+			if (!returning.isEmpty()) {
+				repository.markReturned(returning.keySet());
+				outbox.loansReturned(repository.findAllWithBookByIdIn(returning.keySet()));
+			}
+		});
+		return Arrays.asList(results);
+	}
+
+	private LoanBatchItemDTO saveOne(int index, Loan loan) {
+		try {
+			return LoanBatchItemDTO.ok(index, save(loan).getId());
+		} catch (BusinessException e) {
+			return LoanBatchItemDTO.failed(index, null, e.getMessage());
+		}
+	}
+
+	/*
+	 * As listagens cobrem também os empréstimos arquivados, para que o
+	 * arquivamento não mude o que o cliente da API enxerga.
+	 */
+	@Override
+	public Page<LoanView> find(LoanFilterDTO filterDTO, Pageable pageable) {
+		return repository.findWithArchiveByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(),
+				pageable);
+	}
+
+	@Override
+	public Slice<LoanView> findSlice(LoanFilterDTO filterDTO, Pageable pageable) {
+		return repository.findSliceWithArchiveByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer(),
+				pageable);
+	}
+
+	@Override
+	public Page<LoanView> findApproximate(LoanFilterDTO filterDTO, Pageable pageable) {
+		Slice<LoanView> slice = findSlice(filterDTO, pageable);
+		return searchCounts.page(SearchCounts.key("loans", filterDTO.getIsbn(), filterDTO.getCustomer()), slice,
+				() -> repository.countWithArchiveByBookIsbnOrCustomer(filterDTO.getIsbn(), filterDTO.getCustomer()));
+	}
+
+	@Override
+	public Slice<LoanView> findAfter(LoanFilterDTO filterDTO, Long afterId, int size) {
+		return repository.findWithArchiveByBookIsbnOrCustomerAfter(afterId, filterDTO.getIsbn(),
+				filterDTO.getCustomer(), size);
+	}
+
+	@Override
+	public Page<LoanView> getLoansByBook(Book book, Pageable pageable) {
+		return repository.findWithArchiveByBookId(book.getId(), pageable);
 	}
 
 	@Override
 	public List<Loan> getAllLateLoans() {
-		final Integer loanDays = 4;
-		LocalDate threeDaysAgo = LocalDate.now().minusDays(loanDays);
-		return repository.findByLoansDateLessThanAndNotReturned(threeDaysAgo);
+		return repository.findLateLoans(LocalDate.now());
+	}
+
+	@Override
+	public List<LateLoanView> getNewlyLateLoansAfter(LocalDate since, LocalDate referenceDate,
+			LoanPartition partition, Long afterId, int size) {
+		return repository.findNewlyLateLoansAfter(afterId, since, referenceDate, partition.getIndex(),
+				partition.getCount(), PageRequest.of(0, size));
+	}
+
+	@Override
+	public List<LateLoanView> getLateLoansToRemindAfter(LocalDate notifiedUntil, LoanPartition partition,
+			Long afterId, int size) {
+		return repository.findLateLoansToRemindAfter(afterId, notifiedUntil, partition.getIndex(),
+				partition.getCount(), PageRequest.of(0, size));
+	}
+
+	@Override
+	public int markLateNotified(Collection<Long> ids, LocalDate notifiedOn) {
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		return repository.markLateNotified(ids, notifiedOn);
+	}
+
+	/*
+	 * A restrição de um empréstimo aberto por livro e a chave estrangeira do
+	 * livro (excluído entre a busca e o insert) viram erros de negócio; as
+	 * demais violações (chave do outbox) seguem como estão.
+	 */
+	private static RuntimeException alreadyLoaned(DataIntegrityViolationException e) {
+		if (Constraints.violated(e, Constraints.LOAN_OPEN_BOOK_ID)) {
+			return new BusinessException("Book already loaned");
+		}
+		if (Constraints.violated(e, Constraints.LOAN_BOOK)) {
+			return new BusinessException("Book not found for passed isbn");
+		}
+		return e;
+	}
+
+	/*
+	 * O vencimento é calculado uma vez, na criação, com o prazo configurado;
+	 * mudar o prazo não altera empréstimos já abertos.
+	 */
+	private Loan setDueDate(Loan loan) {
+		if (loan.getDueDate() == null && loan.getLoanDate() != null) {
+			loan.setDueDate(loan.getLoanDate().plusDays(loanDays));
+		}
+		return loan;
 	}
 
 }
@@ -0,0 +1,22 @@
+package com.dagurasu.libraryapi.api.service.importer;
+
+import java.io.BufferedReader;
+
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public enum BookImportFormat {
+
+	CSV, NDJSON;
+
+	public static final String TEXT_CSV_VALUE = "text/csv";
+
+	public static BookImportFormat of(MediaType mediaType) {
+		return MediaType.APPLICATION_NDJSON.isCompatibleWith(mediaType) ? NDJSON : CSV;
+	}
+
+	public BookRowReader open(BufferedReader reader, ObjectMapper objectMapper) {
+		return this == NDJSON ? new NdjsonBookRowReader(reader, objectMapper) : new CsvBookRowReader(reader);
+	}
+}
@@ -0,0 +1,26 @@
+package com.dagurasu.libraryapi.api.service.importer;
+
+import com.dagurasu.libraryapi.api.dto.BookDTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Uma linha do arquivo de importação: o livro lido ou o erro de leitura.
+ */
+@Getter
+@AllArgsConstructor
+public class BookRow {
+
+	private final long line;
+	private final BookDTO book;
+	private final String error;
+
+	public static BookRow of(long line, BookDTO book) {
+		return new BookRow(line, book, null);
+	}
+
+	public static BookRow error(long line, String error) {
+		return new BookRow(line, null, error);
+	}
+}
@@ -0,0 +1,43 @@
+package com.dagurasu.libraryapi.api.service.importer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Lê o arquivo de importação linha a linha, sem carregá-lo em memória.
+ */
+public abstract class BookRowReader implements Closeable {
+
+	private final BufferedReader reader;
+	private long line;
+
+	protected BookRowReader(BufferedReader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Próxima linha não vazia, ou null no fim do arquivo.
+	 */
+	public BookRow next() throws IOException {
+		String text;
+		while ((text = reader.readLine()) != null) {
+			line++;
+			BookRow row = text.trim().isEmpty() ? null : parse(line, text);
+			if (row != null) {
+				return row;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Converte uma linha; null quando a linha não é um livro (ex.: cabeçalho).
+	 */
+	protected abstract BookRow parse(long line, String text);
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,103 @@
+package com.dagurasu.libraryapi.api.service.importer;
+
+import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.dagurasu.libraryapi.exception.BusinessException;
+
+/**
+ * CSV com cabeçalho contendo as colunas title, author e isbn, em qualquer
+ * ordem. Campos podem vir entre aspas, com "" para aspas literais; quebras
+ * de linha dentro de campos não são suportadas.
+ */
+public class CsvBookRowReader extends BookRowReader {
+
+	private static final char SEPARATOR = ',';
+	private static final char QUOTE = '"';
+
+	private int title = -1;
+	private int author = -1;
+	private int isbn = -1;
+	private int columns;
+
+	public CsvBookRowReader(BufferedReader reader) {
+		super(reader);
+	}
+
+	@Override
+	protected BookRow parse(long line, String text) {
+		List<String> fields = split(text);
+		if (columns == 0) {
+			header(fields);
+			return null;
+		}
+		if (fields == null) {
+			return BookRow.error(line, "Linha CSV malformada.");
+		}
+		if (fields.size() != columns) {
+			return BookRow.error(line, "Esperadas " + columns + " colunas, encontradas " + fields.size() + ".");
+		}
+		return BookRow.of(line, BookDTO.builder()
+				.title(fields.get(title))
+				.author(fields.get(author))
+				.isbn(fields.get(isbn))
+				.build());
+	}
+
+	private void header(List<String> fields) {
+		if (fields != null) {
+			for (int i = 0; i < fields.size(); i++) {
+				String name = fields.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+				if (name.equals("title")) {
+					title = i;
+				} else if (name.equals("author")) {
+					author = i;
+				} else if (name.equals("isbn")) {
+					isbn = i;
+				}
+			}
+		}
+		if (title < 0 || author < 0 || isbn < 0) {
+			throw new BusinessException("Cabeçalho CSV deve conter as colunas title, author e isbn.");
+		}
+		columns = fields.size();
+	}
+
+	/**
+	 * Separa os campos da linha, ou retorna null se houver aspas sem fechamento.
+	 */
+	static List<String> split(String text) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (quoted) {
+				if (c == QUOTE && i + 1 < text.length() && text.charAt(i + 1) == QUOTE) {
+					field.append(QUOTE);
+					i++;
+				} else if (c == QUOTE) {
+					quoted = false;
+				} else {
+					field.append(c);
+				}
+			} else if (c == QUOTE && field.toString().trim().isEmpty()) {
+				field.setLength(0);
+				quoted = true;
+			} else if (c == SEPARATOR) {
+				fields.add(field.toString().trim());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		if (quoted) {
+			return null;
+		}
+		fields.add(field.toString().trim());
+		return fields;
+	}
+}
@@ -0,0 +1,34 @@
+package com.dagurasu.libraryapi.api.service.importer;
+
+import java.io.BufferedReader;
+
+import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Um objeto JSON por linha: {"title": ..., "author": ..., "isbn": ...}.
+ */
+public class NdjsonBookRowReader extends BookRowReader {
+
+	private final ObjectMapper objectMapper;
+
+	public NdjsonBookRowReader(BufferedReader reader, ObjectMapper objectMapper) {
+		super(reader);
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	protected BookRow parse(long line, String text) {
+		try {
+			BookDTO book = objectMapper.readValue(text, BookDTO.class);
+			if (book == null) {
+				return BookRow.error(line, "JSON inválido.");
+			}
+			book.setId(null);
+			return BookRow.of(line, book);
+		} catch (JsonProcessingException e) {
+			return BookRow.error(line, "JSON inválido.");
+		}
+	}
+}
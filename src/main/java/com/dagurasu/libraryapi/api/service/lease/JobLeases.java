@@ -0,0 +1,81 @@
+package com.dagurasu.libraryapi.api.service.lease;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.StringUtils;
+
+import com.dagurasu.libraryapi.api.model.repository.JobLeaseRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Coordenação entre réplicas pelo próprio banco da aplicação: cada job (ou
+ * partição de job) é uma linha em job_lease e só quem detém o lease o
+ * executa. Os relógios das réplicas precisam estar próximos em relação ao
+ * ttl, já que a expiração é calculada por quem adquire.
+ */
+@Slf4j
+@Component
+public class JobLeases {
+
+	private final JobLeaseRepository repository;
+	private final TransactionOperations transactions;
+	private final String owner;
+
+	public JobLeases(JobLeaseRepository repository, TransactionOperations transactions,
+			@Value("${application.jobs.instance-id:}") String instanceId) {
+		this.repository = repository;
+		this.transactions = transactions;
+		this.owner = StringUtils.hasText(instanceId) ? instanceId : defaultOwner();
+	}
+
+	/*
+	 * Adquire ou renova. Se a linha ainda não existe, a primeira réplica a
+	 * inseri-la fica com o lease e as demais esbarram na chave primária.
+	 */
+	public boolean tryAcquire(String name, Duration ttl) {
+		LocalDateTime now = LocalDateTime.now();
+		LocalDateTime expiresAt = now.plus(ttl);
+		try {
+			return transactions.execute(status -> {
+				if (repository.claim(name, owner, now, expiresAt) > 0) {
+					return true;
+				}
+				if (repository.existsById(name)) {
+					return false;
+				}
+				return repository.insert(name, owner, now, expiresAt) > 0;
+			});
+		} catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+			log.debug("Lease {} taken by another instance", name);
+			return false;
+		}
+	}
+
+	public void release(String name) {
+		transactions.executeWithoutResult(status -> repository.release(name, owner, LocalDateTime.now()));
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	private static String defaultOwner() {
+		String host;
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			host = "unknown";
+		}
+		return host + ":" + UUID.randomUUID().toString().substring(0, 8);
+	}
+}
@@ -0,0 +1,125 @@
+package com.dagurasu.libraryapi.api.service.outbox;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.entity.OutboxMessage;
+import com.dagurasu.libraryapi.api.model.entity.OutboxStatus;
+import com.dagurasu.libraryapi.api.model.projection.LateLoanView;
+import com.dagurasu.libraryapi.api.model.repository.OutboxRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Enfileira as notificações de empréstimo na tabela de outbox. Os métodos
+ * participam da transação de quem chama, então a mensagem só existe se a
+ * mudança de estado for confirmada.
+ */
+@Component
+@RequiredArgsConstructor
+public class NotificationOutbox {
+
+	public static final String LATE_LOAN_SUBJECT = "Livro com empréstimo atrasado";
+	public static final String LOAN_CREATED_SUBJECT = "Empréstimo registrado";
+	public static final String LOAN_RETURNED_SUBJECT = "Livro devolvido";
+
+	private final OutboxRepository repository;
+
+	@Transactional
+	public boolean loanCreated(Loan loan) {
+		return enqueue(created(loan)) > 0;
+	}
+
+	@Transactional
+	public int loansCreated(List<Loan> loans) {
+		List<OutboxMessage> messages = new ArrayList<>(loans.size());
+		for (Loan loan : loans) {
+			messages.add(created(loan));
+		}
+		return enqueue(messages.toArray(new OutboxMessage[messages.size()]));
+	}
+
+	@Transactional
+	public boolean loanReturned(Loan loan) {
+		return enqueue(returned(loan)) > 0;
+	}
+
+	@Transactional
+	public int loansReturned(List<Loan> loans) {
+		List<OutboxMessage> messages = new ArrayList<>(loans.size());
+		for (Loan loan : loans) {
+			messages.add(returned(loan));
+		}
+		return enqueue(messages.toArray(new OutboxMessage[messages.size()]));
+	}
+
+	/*
+	 * Uma mensagem por empréstimo e por dia: rodar o job de novo no mesmo dia
+	 * não gera notificações repetidas.
+	 */
+	@Transactional
+	public int lateLoans(List<LateLoanView> loans, LocalDate referenceDate, String mensagem) {
+		List<OutboxMessage> messages = new ArrayList<>(loans.size());
+		for (LateLoanView loan : loans) {
+			messages.add(message("late-loan:" + loan.getId() + ":" + referenceDate, loan.getCustomerEmail(),
+					LATE_LOAN_SUBJECT, mensagem));
+		}
+		return enqueue(messages.toArray(new OutboxMessage[messages.size()]));
+	}
+
+	private int enqueue(OutboxMessage... messages) {
+		Map<String, OutboxMessage> byKey = new LinkedHashMap<>();
+		for (OutboxMessage message : messages) {
+			if (message.getRecipient() != null) {
+				byKey.putIfAbsent(message.getDedupKey(), message);
+			}
+		}
+		if (byKey.isEmpty()) {
+			return 0;
+		}
+
+		Set<String> existing = new HashSet<>(repository.findExistingDedupKeys(byKey.keySet()));
+		byKey.keySet().removeAll(existing);
+		repository.saveAll(byKey.values());
+		return byKey.size();
+	}
+
+	private static OutboxMessage created(Loan loan) {
+		return message("loan-created:" + loan.getId(), loan.getCustomerEmail(), LOAN_CREATED_SUBJECT,
+				"Empréstimo do livro \"" + title(loan) + "\" registrado em " + loan.getLoanDate() + ".");
+	}
+
+	/*
+	 * Um empréstimo reaberto pode ser devolvido de novo; a versão da linha
+	 * separa cada devolução, e repetir a mesma não gera outra mensagem.
+	 */
+	private static OutboxMessage returned(Loan loan) {
+		return message("loan-returned:" + loan.getId() + ":" + loan.getVersion(), loan.getCustomerEmail(), LOAN_RETURNED_SUBJECT,
+				"A devolução do livro \"" + title(loan) + "\" foi registrada. Obrigado!");
+	}
+
+	private static OutboxMessage message(String dedupKey, String recipient, String subject, String body) {
+		return OutboxMessage.builder()
+				.dedupKey(dedupKey)
+				.recipient(recipient)
+				.subject(subject)
+				.body(body)
+				.status(OutboxStatus.PENDING)
+				.createdAt(LocalDateTime.now())
+				.build();
+	}
+
+	private static String title(Loan loan) {
+		return loan.getBook() == null || loan.getBook().getTitle() == null ? "" : loan.getBook().getTitle();
+	}
+}
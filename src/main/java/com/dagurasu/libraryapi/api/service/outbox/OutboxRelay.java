@@ -0,0 +1,126 @@
+package com.dagurasu.libraryapi.api.service.outbox;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.dagurasu.libraryapi.api.model.entity.OutboxMessage;
+import com.dagurasu.libraryapi.api.model.entity.OutboxStatus;
+import com.dagurasu.libraryapi.api.model.repository.OutboxRepository;
+import com.dagurasu.libraryapi.api.service.EmailDispatchResult;
+import com.dagurasu.libraryapi.api.service.EmailService;
+import com.dagurasu.libraryapi.api.service.lease.JobLeases;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Entrega as mensagens pendentes do outbox em segundo plano. As mensagens com
+ * o mesmo assunto e texto seguem juntas em um único envio. A marcação como
+ * enviada acontece depois do envio, então a entrega é "pelo menos uma vez".
+ * Entre réplicas, só quem detém o lease do relay entrega a cada rodada.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+	static final String RELAY_LEASE = "outbox-relay";
+
+	private final OutboxRepository repository;
+	private final EmailService emailService;
+	private final TransactionOperations transactions;
+	private final MeterRegistry meterRegistry;
+	private final JobLeases leases;
+	private final int batchSize;
+	private final int maxAttempts;
+	private final Duration leaseTtl;
+
+	public OutboxRelay(OutboxRepository repository, EmailService emailService, TransactionOperations transactions,
+			MeterRegistry meterRegistry, JobLeases leases,
+			@Value("${application.outbox.relay.batch-size:500}") int batchSize,
+			@Value("${application.outbox.relay.max-attempts:5}") int maxAttempts,
+			@Value("${application.jobs.lease.ttl-ms:600000}") long leaseTtlMs) {
+		this.repository = repository;
+		this.emailService = emailService;
+		this.transactions = transactions;
+		this.meterRegistry = meterRegistry;
+		this.leases = leases;
+		this.batchSize = batchSize;
+		this.maxAttempts = maxAttempts;
+		this.leaseTtl = Duration.ofMillis(leaseTtlMs);
+	}
+
+	@Scheduled(fixedDelayString = "${application.outbox.relay.delay-ms:10000}",
+			initialDelayString = "${application.outbox.relay.delay-ms:10000}")
+	public void relay() {
+		if (!leases.tryAcquire(RELAY_LEASE, leaseTtl)) {
+			return;
+		}
+		try {
+			Long after = 0L;
+			List<OutboxMessage> pending;
+			do {
+				pending = repository.findByStatusAfter(OutboxStatus.PENDING, after, PageRequest.of(0, batchSize));
+				if (pending.isEmpty()) {
+					break;
+				}
+				deliver(pending);
+				after = pending.get(pending.size() - 1).getId();
+			} while (pending.size() == batchSize && leases.tryAcquire(RELAY_LEASE, leaseTtl));
+		} finally {
+			leases.release(RELAY_LEASE);
+		}
+	}
+
+	private void deliver(List<OutboxMessage> pending) {
+		Map<String, List<OutboxMessage>> groups = new LinkedHashMap<>();
+		for (OutboxMessage message : pending) {
+			groups.computeIfAbsent(message.getSubject() + '\0' + message.getBody(), k -> new ArrayList<>())
+					.add(message);
+		}
+
+		List<Long> sent = new ArrayList<>();
+		List<Long> failed = new ArrayList<>();
+		for (List<OutboxMessage> group : groups.values()) {
+			Set<String> recipients = new LinkedHashSet<>();
+			for (OutboxMessage message : group) {
+				recipients.add(message.getRecipient());
+			}
+
+			OutboxMessage first = group.get(0);
+			EmailDispatchResult result = emailService.sendEmails(first.getSubject(), first.getBody(),
+					new ArrayList<>(recipients));
+
+			Set<String> failedRecipients = new HashSet<>(result.getFailedRecipients());
+			for (OutboxMessage message : group) {
+				(failedRecipients.contains(message.getRecipient()) ? failed : sent).add(message.getId());
+			}
+		}
+
+		transactions.executeWithoutResult(status -> {
+			if (!sent.isEmpty()) {
+				repository.markSent(sent, LocalDateTime.now());
+			}
+			if (!failed.isEmpty()) {
+				repository.incrementAttempts(failed);
+				repository.markFailed(failed, maxAttempts);
+			}
+		});
+
+		meterRegistry.counter("library.outbox.sent").increment(sent.size());
+		meterRegistry.counter("library.outbox.failed").increment(failed.size());
+		log.info("Outbox batch delivered: {} sent, {} failed", sent.size(), failed.size());
+	}
+}
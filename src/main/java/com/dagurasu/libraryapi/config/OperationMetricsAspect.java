@@ -0,0 +1,66 @@
+package com.dagurasu.libraryapi.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Timer library.operation em volta de cada método dos serviços, dos mappers e
+ * do envio de e-mails, com as tags layer, operation (Componente.método),
+ * outcome (success/error) e exception. Junto com spring.data.repository.invocations
+ * e http.server.requests, permite separar o tempo de uma requisição entre SQL,
+ * conversão e o restante. Chamadas internas de um componente a ele mesmo não
+ * passam pelo proxy e ficam dentro do tempo do método que as fez.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class OperationMetricsAspect {
+
+	static final String METRIC = "library.operation";
+
+	private final MeterRegistry meterRegistry;
+
+	@Around("execution(public * com.dagurasu.libraryapi.api.service.BookService+.*(..))")
+	public Object bookService(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time("service", "BookService", joinPoint);
+	}
+
+	@Around("execution(public * com.dagurasu.libraryapi.api.service.LoanService+.*(..))")
+	public Object loanService(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time("service", "LoanService", joinPoint);
+	}
+
+	@Around("execution(public * com.dagurasu.libraryapi.api.service.EmailService+.sendEmails(..))")
+	public Object emailService(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time("email", "EmailService", joinPoint);
+	}
+
+	@Around("execution(public * com.dagurasu.libraryapi.api.mapper.*.*(..))")
+	public Object mapper(ProceedingJoinPoint joinPoint) throws Throwable {
+		return time("mapper", joinPoint.getSignature().getDeclaringType().getSimpleName(), joinPoint);
+	}
+
+	private Object time(String layer, String component, ProceedingJoinPoint joinPoint) throws Throwable {
+		Timer.Sample sample = Timer.start(meterRegistry);
+		String exception = "none";
+		try {
+			return joinPoint.proceed();
+		} catch (Throwable e) {
+			exception = e.getClass().getSimpleName();
+			throw e;
+		} finally {
+			sample.stop(Timer.builder(METRIC)
+					.tag("layer", layer)
+					.tag("operation", component + "." + joinPoint.getSignature().getName())
+					.tag("outcome", "none".equals(exception) ? "success" : "error")
+					.tag("exception", exception)
+					.register(meterRegistry));
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.dagurasu.libraryapi.config.sql;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+/**
+ * O DataSource passa por um proxy do datasource-proxy que conta cada comando
+ * SQL da requisição em andamento e registra as consultas lentas. Os totais
+ * por endpoint ficam em /actuator/sqlstats.
+ */
+@Configuration
+public class SqlInstrumentationConfig {
+
+	@Bean
+	public static BeanPostProcessor sqlStatementProxy(
+			@Value("${application.sql.slow-query-ms:500}") long slowQueryMs) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof DataSource) {
+					return ProxyDataSourceBuilder.create(beanName, (DataSource) bean)
+							.listener(new SqlStatementListener(slowQueryMs))
+							.build();
+				}
+				return bean;
+			}
+		};
+	}
+
+	@Bean
+	public SqlStatsEndpoint sqlStatsEndpoint() {
+		return new SqlStatsEndpoint();
+	}
+
+	@Bean
+	public FilterRegistrationBean<SqlStatsFilter> sqlStatsFilter(SqlStatsEndpoint stats, MeterRegistry meterRegistry) {
+		FilterRegistrationBean<SqlStatsFilter> registration = new FilterRegistrationBean<>(
+				new SqlStatsFilter(stats, meterRegistry));
+		registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+		return registration;
+	}
+}
@@ -0,0 +1,69 @@
+package com.dagurasu.libraryapi.config.sql;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Contagem de comandos SQL e de tempo de JDBC da thread atual. Cada
+ * {@link Recording} aberta recebe os comandos executados até ser fechada;
+ * gravações aninhadas (a de um teste em volta da de uma requisição do MockMvc)
+ * contam os mesmos comandos.
+ */
+public final class SqlStatementCounter {
+
+	private static final ThreadLocal<Deque<Recording>> ACTIVE = new ThreadLocal<>();
+
+	private SqlStatementCounter() {
+	}
+
+	public static Recording start() {
+		Deque<Recording> active = ACTIVE.get();
+		if (active == null) {
+			active = new ArrayDeque<>();
+			ACTIVE.set(active);
+		}
+		Recording recording = new Recording();
+		active.push(recording);
+		return recording;
+	}
+
+	static void record(long elapsedNanos) {
+		Deque<Recording> active = ACTIVE.get();
+		if (active == null) {
+			return;
+		}
+		for (Recording recording : active) {
+			recording.statements++;
+			recording.jdbcNanos += elapsedNanos;
+		}
+	}
+
+	public static final class Recording implements AutoCloseable {
+
+		private int statements;
+		private long jdbcNanos;
+
+		private Recording() {
+		}
+
+		public int getStatements() {
+			return statements;
+		}
+
+		public Duration getJdbcTime() {
+			return Duration.ofNanos(jdbcNanos);
+		}
+
+		@Override
+		public void close() {
+			Deque<Recording> active = ACTIVE.get();
+			if (active != null) {
+				active.remove(this);
+				if (active.isEmpty()) {
+					ACTIVE.remove();
+				}
+			}
+		}
+	}
+}
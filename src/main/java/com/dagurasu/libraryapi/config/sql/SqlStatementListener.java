@@ -0,0 +1,63 @@
+package com.dagurasu.libraryapi.config.sql;
+
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Mede cada execução no JDBC: soma nas gravações abertas da thread e registra
+ * em log, com os parâmetros, as que passam do limite de consulta lenta.
+ */
+@Slf4j
+class SqlStatementListener implements QueryExecutionListener {
+
+	private static final String START = "sqlStatementStart";
+
+	private final long slowQueryNanos;
+
+	SqlStatementListener(long slowQueryMs) {
+		this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMs);
+	}
+
+	@Override
+	public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+		execInfo.addCustomValue(START, System.nanoTime());
+	}
+
+	@Override
+	public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+		Long start = execInfo.getCustomValue(START, Long.class);
+		long elapsed = start == null ? TimeUnit.MILLISECONDS.toNanos(execInfo.getElapsedTime())
+				: System.nanoTime() - start;
+		SqlStatementCounter.record(elapsed);
+
+		if (slowQueryNanos > 0 && elapsed >= slowQueryNanos) {
+			for (QueryInfo query : queryInfoList) {
+				log.warn("Slow query ({} ms, {} parameter sets): {} params {}", TimeUnit.NANOSECONDS.toMillis(elapsed),
+						query.getParametersList().size(), query.getQuery(), parameters(query));
+			}
+		}
+	}
+
+	/*
+	 * Só o primeiro conjunto de parâmetros, para que um batch grande não vire
+	 * uma linha de log enorme.
+	 */
+	private static String parameters(QueryInfo query) {
+		StringJoiner joiner = new StringJoiner(", ", "[", "]");
+		if (!query.getParametersList().isEmpty()) {
+			for (ParameterSetOperation operation : query.getParametersList().get(0)) {
+				Object[] args = operation.getArgs();
+				boolean isNull = "setNull".equals(operation.getMethod().getName());
+				joiner.add(args[0] + "=" + (isNull || args.length < 2 ? null : args[1]));
+			}
+		}
+		return joiner.toString();
+	}
+}
@@ -0,0 +1,74 @@
+package com.dagurasu.libraryapi.config.sql;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import lombok.Value;
+
+/**
+ * /actuator/sqlstats: comandos SQL e tempo de JDBC acumulados por endpoint
+ * ("GET /api/loans"), desde o início da aplicação ou do último DELETE.
+ */
+@Endpoint(id = "sqlstats")
+public class SqlStatsEndpoint {
+
+	private final ConcurrentMap<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+
+	void record(String endpoint, int statements, long jdbcNanos) {
+		aggregates.computeIfAbsent(endpoint, k -> new Aggregate()).add(statements, jdbcNanos);
+	}
+
+	@ReadOperation
+	public Map<String, EndpointSqlStats> stats() {
+		Map<String, EndpointSqlStats> stats = new TreeMap<>();
+		aggregates.forEach((endpoint, aggregate) -> stats.put(endpoint, aggregate.snapshot()));
+		return stats;
+	}
+
+	@DeleteOperation
+	public void reset() {
+		aggregates.clear();
+	}
+
+	@Value
+	public static class EndpointSqlStats {
+		long requests;
+		long statements;
+		double avgStatements;
+		long maxStatements;
+		double jdbcTimeMs;
+		double avgJdbcTimeMs;
+	}
+
+	private static class Aggregate {
+
+		private final LongAdder requests = new LongAdder();
+		private final LongAdder statements = new LongAdder();
+		private final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+		private final LongAdder jdbcNanos = new LongAdder();
+
+		void add(int statementCount, long nanos) {
+			requests.increment();
+			statements.add(statementCount);
+			maxStatements.accumulate(statementCount);
+			jdbcNanos.add(nanos);
+		}
+
+		EndpointSqlStats snapshot() {
+			long count = requests.sum();
+			long total = statements.sum();
+			double jdbcMs = jdbcNanos.sum() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+			return new EndpointSqlStats(count, total, count == 0 ? 0 : total / (double) count, maxStatements.get(),
+					jdbcMs, count == 0 ? 0 : jdbcMs / count);
+		}
+	}
+}
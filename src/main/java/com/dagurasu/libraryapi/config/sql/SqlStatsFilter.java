@@ -0,0 +1,52 @@
+package com.dagurasu.libraryapi.config.sql;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.dagurasu.libraryapi.config.sql.SqlStatementCounter.Recording;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Abre uma gravação do SqlStatementCounter por requisição e, ao final, soma o
+ * resultado no SqlStatsEndpoint e nas métricas library.sql.statements e
+ * library.sql.time, pelo padrão da rota (e não pela URI, que tem ids).
+ */
+@RequiredArgsConstructor
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+	private final SqlStatsEndpoint stats;
+	private final MeterRegistry meterRegistry;
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		try (Recording recording = SqlStatementCounter.start()) {
+			try {
+				chain.doFilter(request, response);
+			} finally {
+				Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+				String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+				long nanos = recording.getJdbcTime().toNanos();
+
+				stats.record(request.getMethod() + " " + uri, recording.getStatements(), nanos);
+				DistributionSummary.builder("library.sql.statements").baseUnit("statements")
+						.tag("method", request.getMethod()).tag("uri", uri).register(meterRegistry)
+						.record(recording.getStatements());
+				Timer.builder("library.sql.time").tag("method", request.getMethod()).tag("uri", uri)
+						.register(meterRegistry).record(Duration.ofNanos(nanos));
+			}
+		}
+	}
+}
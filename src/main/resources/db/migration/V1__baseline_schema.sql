@@ -0,0 +1,20 @@
+-- Esquema como o Hibernate o gerava antes das migrações (ddl-auto). Bancos já
+-- existentes entram na versão 1 pelo baseline e seguem a partir da V2; neles a
+-- chave estrangeira mantém o nome gerado pelo Hibernate.
+
+create table book (
+	id bigint generated by default as identity primary key,
+	title varchar(255),
+	author varchar(255),
+	isbn varchar(255)
+);
+
+create table loan (
+	id bigint generated by default as identity primary key,
+	customer varchar(100),
+	customer_email varchar(255),
+	id_book bigint,
+	loan_date date,
+	returned boolean,
+	constraint fk_loan_book foreign key (id_book) references book (id)
+);
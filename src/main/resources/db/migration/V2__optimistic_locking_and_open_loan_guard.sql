@@ -0,0 +1,14 @@
+-- Versão para o bloqueio otimista de livros e empréstimos e a coluna que
+-- garante no banco um único empréstimo aberto por livro.
+
+alter table book add column version bigint;
+update book set version = 0;
+
+alter table loan add column version bigint;
+update loan set version = 0;
+
+-- abertos são os com returned diferente de true, como no Loan.syncStatus; bancos
+-- com mais de um empréstimo aberto para o mesmo livro precisam ser corrigidos antes
+alter table loan add column open_book_id bigint;
+update loan set open_book_id = id_book where returned is null or returned = false;
+alter table loan add constraint uk_loan_open_book_id unique (open_book_id);
@@ -0,0 +1,15 @@
+-- Situação e vencimento gravados no empréstimo, para a busca de atrasados por
+-- índice, e a data do último aviso de atraso. O vencimento dos empréstimos
+-- existentes usa o prazo configurado hoje (application.loans.period-days).
+
+alter table loan add column status varchar(10);
+update loan set status = case when returned = true then 'RETURNED' else 'OPEN' end;
+alter table loan alter column status set not null;
+
+alter table loan add column due_date date;
+update loan set due_date = dateadd(day, ${loan_period_days}, loan_date);
+
+alter table loan add column late_notified_on date;
+
+create index idx_loan_status_due_date on loan (status, due_date);
+create index idx_loan_status_late_notified_on on loan (status, late_notified_on);
@@ -0,0 +1,30 @@
+-- Outbox das notificações e as tabelas que coordenam os jobs entre réplicas:
+-- marca d'água do aviso de atrasos e leases.
+
+create table outbox_message (
+	id bigint generated by default as identity primary key,
+	dedup_key varchar(150) not null,
+	recipient varchar(255) not null,
+	subject varchar(255) not null,
+	body varchar(2000) not null,
+	status varchar(10) not null,
+	attempts integer not null,
+	created_at timestamp,
+	sent_at timestamp,
+	constraint uk_outbox_message_dedup_key unique (dedup_key)
+);
+
+create index idx_outbox_status_id on outbox_message (status, id);
+
+create table job_watermark (
+	name varchar(50) not null primary key,
+	watermark date not null,
+	updated_at timestamp
+);
+
+create table job_lease (
+	name varchar(50) not null primary key,
+	owner varchar(100) not null,
+	expires_at timestamp not null,
+	acquired_at timestamp
+);
@@ -0,0 +1,14 @@
+-- Empréstimos devolvidos antigos, movidos da tabela loan pelo LoanArchiver.
+
+create table loan_archive (
+	id bigint not null primary key,
+	customer varchar(100),
+	customer_email varchar(255),
+	id_book bigint,
+	loan_date date,
+	due_date date,
+	archived_at timestamp,
+	constraint fk_loan_archive_book foreign key (id_book) references book (id)
+);
+
+create index idx_loan_archive_customer on loan_archive (customer);
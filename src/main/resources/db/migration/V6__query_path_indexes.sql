@@ -0,0 +1,16 @@
+-- Índices para os caminhos de consulta do BookRepository e do LoanRepository;
+-- o QueryPlanTest falha se algum deles voltar a ser uma varredura completa.
+
+-- existsByIsbn, findByIsbn, findByIsbnIn e o filtro por isbn das listagens de
+-- empréstimo. Bancos com isbn duplicado precisam ser corrigidos antes.
+alter table book add constraint uk_book_isbn unique (isbn);
+
+-- existsByBookAndNotReturned e a listagem de empréstimos por livro
+create index idx_loan_book_status on loan (id_book, status);
+create index idx_loan_archive_book on loan_archive (id_book);
+
+-- filtro por cliente das listagens de empréstimo
+create index idx_loan_customer on loan (customer);
+
+-- seleção do LoanArchiver: devolvidos com data de empréstimo anterior ao corte
+create index idx_loan_status_loan_date on loan (status, loan_date);
@@ -0,0 +1,49 @@
+package com.dagurasu.libraryapi.api.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.dagurasu.libraryapi.api.dto.LoanDTO;
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+
+public class LoanMapperTest {
+
+	BookMapper bookMapper = new BookMapper();
+	LoanMapper loanMapper = new LoanMapper(bookMapper);
+
+	@Test
+	@DisplayName("Deve converter um empréstimo com o livro para DTO.")
+	public void loanToDTOTest() {
+
+		Book book = Book.builder().id(1l).title("As Aventuras").author("Fulano").isbn("123").build();
+		Loan loan = Loan.builder().id(2l).customer("Fulano").customerEmail("fulano@email.com").book(book)
+				.loanDate(LocalDate.now()).build();
+
+		LoanDTO dto = loanMapper.toDTO(loan);
+
+		assertThat(dto.getId()).isEqualTo(2l);
+		assertThat(dto.getCustomer()).isEqualTo("Fulano");
+		assertThat(dto.getEmail()).isEqualTo("fulano@email.com");
+		assertThat(dto.getBook()).isEqualTo(BookDTO.builder().id(1l).title("As Aventuras").author("Fulano").isbn("123").build());
+	}
+
+	@Test
+	@DisplayName("Deve converter um DTO de livro para entidade.")
+	public void bookToEntityTest() {
+
+		BookDTO dto = BookDTO.builder().title("As Aventuras").author("Fulano").isbn("123").build();
+
+		Book book = bookMapper.toEntity(dto);
+
+		assertThat(book.getId()).isNull();
+		assertThat(book.getTitle()).isEqualTo("As Aventuras");
+		assertThat(book.getAuthor()).isEqualTo("Fulano");
+		assertThat(book.getIsbn()).isEqualTo("123");
+	}
+}
@@ -4,6 +4,7 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.Reader;
 import java.util.Optional;
 
 import org.hamcrest.Matchers;
@@ -19,6 +20,9 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -28,9 +32,13 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
 import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.dagurasu.libraryapi.api.dto.BookImportErrorDTO;
+import com.dagurasu.libraryapi.api.dto.BookImportResultDTO;
 import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.service.BookImportService;
 import com.dagurasu.libraryapi.api.service.BookService;
 import com.dagurasu.libraryapi.api.service.LoanService;
+import com.dagurasu.libraryapi.api.service.importer.BookImportFormat;
 import com.dagurasu.libraryapi.exception.BusinessException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -51,6 +59,9 @@ public class BookControllerTest {
 	@MockBean
     LoanService loanService;
 
+	@MockBean
+	BookImportService importService;
+
 	@Test
 	@DisplayName("Deve criar um livro com sucesso.")
 	public void createBookTest() throws Exception {
@@ -85,6 +96,22 @@ public class BookControllerTest {
 				.andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(3)));
 	}
 
+	@Test
+	@DisplayName("Deve lançar erro de validação quando o título passar do tamanho da coluna.")
+	public void createBookWithTooLongTitleTest() throws Exception {
+
+		BookDTO dto = createNewBook();
+		dto.setTitle(new String(new char[256]).replace('\0', 'a'));
+		String json = new ObjectMapper().writeValueAsString(dto);
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API)
+				.contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON).content(json);
+
+		mvc.perform(request).andExpect(status().isBadRequest())
+				.andExpect(MockMvcResultMatchers.jsonPath("errors", Matchers.hasSize(1)));
+		Mockito.verify(service, Mockito.never()).save(Mockito.any(Book.class));
+	}
+
 	@Test
 	@DisplayName("Deve lançar erro ao tentar cadastrar um livro com isbn já utilizado por outro.")
 	public void createBookWithDuplicatedIsbn() throws Exception {
@@ -111,8 +138,9 @@ public class BookControllerTest {
 		Long id = 1l;
 
 		Book book = Book.builder().id(id).author(createNewBook().getAuthor()).title(createNewBook().getTitle())
-				.isbn(createNewBook().getIsbn()).build();
+				.isbn(createNewBook().getIsbn()).version(1l).build();
 
+		BDDMockito.given(service.getVersion(id)).willReturn(Optional.of(1l));
 		BDDMockito.given(service.getById(id)).willReturn(Optional.of(book));
 
 		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("/" + id))
@@ -123,26 +151,73 @@ public class BookControllerTest {
 				.andExpect(MockMvcResultMatchers.jsonPath("author").value(createNewBook().getAuthor()))
 				.andExpect(MockMvcResultMatchers.jsonPath("isbn").value(createNewBook().getIsbn()));
 
+		Mockito.verify(service, Mockito.never()).getCurrentById(Mockito.anyLong());
+	}
+
+	@Test
+	@DisplayName("Deve reler do banco o livro guardado no cache com versão desatualizada.")
+	public void getBookStaleCacheTest() throws Exception {
+
+		Book cached = Book.builder().id(1l).title("Título antigo").author("Arthur").isbn("001").version(4l).build();
+		Book current = cached.toBuilder().title("Título novo").version(5l).build();
+		BDDMockito.given(service.getVersion(1l)).willReturn(Optional.of(5l));
+		BDDMockito.given(service.getById(1l)).willReturn(Optional.of(cached));
+		BDDMockito.given(service.getCurrentById(1l)).willReturn(Optional.of(current));
+
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"5\""))
+				.andExpect(MockMvcResultMatchers.jsonPath("title").value("Título novo"));
+	}
+
+	@Test
+	@DisplayName("Deve retornar not modified quando o cliente já tiver a versão atual do livro.")
+	public void getBookNotModifiedTest() throws Exception {
+
+		BDDMockito.given(service.getVersion(1l)).willReturn(Optional.of(3l));
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("/1"))
+				.header(HttpHeaders.IF_NONE_MATCH, "\"3\"").accept(MediaType.APPLICATION_JSON);
+
+		mvc.perform(request).andExpect(status().isNotModified())
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"3\""))
+				.andExpect(MockMvcResultMatchers.content().string(""));
+
+		Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+	}
+
+	@Test
+	@DisplayName("Deve devolver o livro com ETag novo quando a versão do cliente estiver desatualizada.")
+	public void getBookModifiedTest() throws Exception {
+
+		Book book = Book.builder().id(1l).title("As aventuras").author("Arthur").isbn("001").version(4l).build();
+		BDDMockito.given(service.getVersion(1l)).willReturn(Optional.of(4l));
+		BDDMockito.given(service.getById(1l)).willReturn(Optional.of(book));
+
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1")).header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+				.accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk())
+				.andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"4\""))
+				.andExpect(MockMvcResultMatchers.jsonPath("title").value("As aventuras"));
 	}
 
 	@Test
 	@DisplayName("Deve retornar resource not found quando o livro procurado não existir.")
 	public void bookNotFoundTest() throws Exception {
 
-		BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.empty());
+		BDDMockito.given(service.getVersion(Mockito.anyLong())).willReturn(Optional.empty());
 
 		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get(BOOK_API.concat("/" + 1))
 				.accept(MediaType.APPLICATION_JSON);
 
 		mvc.perform(request).andExpect(status().isNotFound());
-
+		Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
 	}
 
 	@Test
 	@DisplayName("Deve deletar um livro.")
 	public void deleteBookTest() throws Exception {
 
-		BDDMockito.given(service.getById(anyLong())).willReturn(Optional.of(Book.builder().id(1l).build()));
+		BDDMockito.given(service.getCurrentById(anyLong())).willReturn(Optional.of(Book.builder().id(1l).build()));
 
 		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete(BOOK_API.concat("/" + 1));
 
@@ -150,11 +225,23 @@ public class BookControllerTest {
 
 	}
 
+	@Test
+	@DisplayName("Deve recusar a exclusão quando o If-Match não corresponder à versão atual.")
+	public void deleteBookStaleVersionTest() throws Exception {
+
+		BDDMockito.given(service.getCurrentById(1l)).willReturn(Optional.of(Book.builder().id(1l).version(2l).build()));
+
+		mvc.perform(MockMvcRequestBuilders.delete(BOOK_API.concat("/1")).header(HttpHeaders.IF_MATCH, "\"1\""))
+				.andExpect(status().isPreconditionFailed());
+
+		Mockito.verify(service, Mockito.never()).delete(Mockito.any());
+	}
+
 	@Test
 	@DisplayName("Deve retornar resource not found quando não encontrar um livro para deletar.")
 	public void deleteInexistentBookTest() throws Exception {
 
-		BDDMockito.given(service.getById(anyLong())).willReturn(Optional.empty());
+		BDDMockito.given(service.getCurrentById(anyLong())).willReturn(Optional.empty());
 
 		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete(BOOK_API.concat("/" + 1));
 
@@ -171,11 +258,14 @@ public class BookControllerTest {
 
 		Book updatingBook = Book.builder().id(id).title("Teste do dia").author("Desconhecido").isbn("001").build();
 
-		BDDMockito.given(service.getById(id)).willReturn(Optional.of(updatingBook));
+		BDDMockito.given(service.getCurrentById(id)).willReturn(Optional.of(updatingBook));
 
 		Book updatedBook = Book.builder().id(id).author("Douglas").title("O Mestre do Bug").isbn("001").build();
 
-		BDDMockito.given(service.update(updatingBook)).willReturn(updatedBook);
+		Book changedBook = updatingBook.toBuilder().author(createNewBook().getAuthor())
+				.title(createNewBook().getTitle()).build();
+
+		BDDMockito.given(service.update(changedBook)).willReturn(updatedBook);
 
 		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/" + id)).content(json)
 				.accept(MediaType.APPLICATION_JSON).contentType(MediaType.APPLICATION_JSON);
@@ -187,13 +277,41 @@ public class BookControllerTest {
 
 	}
 
+	@Test
+	@DisplayName("Deve recusar a atualização quando o If-Match não corresponder à versão atual.")
+	public void updateBookStaleVersionTest() throws Exception {
+
+		Book book = Book.builder().id(1l).title("Teste do dia").author("Desconhecido").isbn("001").version(2l).build();
+		BDDMockito.given(service.getCurrentById(1l)).willReturn(Optional.of(book));
+
+		mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+				.content(new ObjectMapper().writeValueAsString(createNewBook())).header(HttpHeaders.IF_MATCH, "\"1\"")
+				.contentType(MediaType.APPLICATION_JSON)).andExpect(status().isPreconditionFailed());
+
+		Mockito.verify(service, Mockito.never()).update(Mockito.any());
+	}
+
+	@Test
+	@DisplayName("Deve retornar precondition failed quando outra requisição alterar o livro antes da gravação.")
+	public void updateBookConcurrentModificationTest() throws Exception {
+
+		Book book = Book.builder().id(1l).title("Teste do dia").author("Desconhecido").isbn("001").version(2l).build();
+		BDDMockito.given(service.getCurrentById(1l)).willReturn(Optional.of(book));
+		BDDMockito.given(service.update(Mockito.any(Book.class)))
+				.willThrow(new ObjectOptimisticLockingFailureException(Book.class, 1l));
+
+		mvc.perform(MockMvcRequestBuilders.put(BOOK_API.concat("/1"))
+				.content(new ObjectMapper().writeValueAsString(createNewBook())).header(HttpHeaders.IF_MATCH, "\"2\"")
+				.contentType(MediaType.APPLICATION_JSON)).andExpect(status().isPreconditionFailed());
+	}
+
 	@Test
 	@DisplayName("Deve retornar resource not found ao tentar atualizar um livro inexistente.")
 	public void updateInexistentBookTest() throws Exception {
 
 		String json = new ObjectMapper().writeValueAsString(createNewBook());
 
-		BDDMockito.given(service.getById(Mockito.anyLong())).willReturn(Optional.empty());
+		BDDMockito.given(service.getCurrentById(Mockito.anyLong())).willReturn(Optional.empty());
 
 		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.put(BOOK_API.concat("/" + 1)).content(json)
 				.accept(MediaType.APPLICATION_JSON).contentType(MediaType.APPLICATION_JSON);
@@ -202,6 +320,102 @@ public class BookControllerTest {
 
 	}
 
+	@Test
+	@DisplayName("Deve atualizar parcialmente um livro.")
+	public void patchBookTest() throws Exception {
+
+		BDDMockito.given(service.patch(1l, null, "Novo título", null)).willReturn(true);
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.patch(BOOK_API.concat("/1"))
+				.content("{\"title\":\"Novo título\"}").contentType(MediaType.APPLICATION_JSON);
+
+		mvc.perform(request).andExpect(status().isNoContent());
+
+		Mockito.verify(service).patch(1l, null, "Novo título", null);
+		Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+	}
+
+	@Test
+	@DisplayName("Deve retornar resource not found ao atualizar parcialmente um livro inexistente.")
+	public void patchInexistentBookTest() throws Exception {
+
+		BDDMockito.given(service.patch(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.any())).willReturn(false);
+
+		mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1")).content("{\"author\":\"Fulano\"}")
+				.contentType(MediaType.APPLICATION_JSON)).andExpect(status().isNotFound());
+	}
+
+	@Test
+	@DisplayName("Deve atualizar parcialmente um livro com If-Match na versão atual.")
+	public void patchBookWithIfMatchTest() throws Exception {
+
+		BDDMockito.given(service.getVersion(1l)).willReturn(Optional.of(3l));
+		BDDMockito.given(service.patch(1l, 3l, "Novo título", null)).willReturn(true);
+
+		mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1")).content("{\"title\":\"Novo título\"}")
+				.contentType(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_MATCH, "\"3\""))
+				.andExpect(status().isNoContent());
+
+		Mockito.verify(service).patch(1l, 3l, "Novo título", null);
+	}
+
+	@Test
+	@DisplayName("Deve retornar 412 na atualização parcial com If-Match desatualizado.")
+	public void patchBookWithStaleIfMatchTest() throws Exception {
+
+		BDDMockito.given(service.getVersion(1l)).willReturn(Optional.of(4l));
+
+		mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1")).content("{\"title\":\"Novo título\"}")
+				.contentType(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_MATCH, "\"3\""))
+				.andExpect(status().isPreconditionFailed());
+
+		Mockito.verify(service, Mockito.never()).patch(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.any());
+	}
+
+	@Test
+	@DisplayName("Deve retornar 412 quando outra escrita mudar a versão entre a conferência e o UPDATE.")
+	public void patchBookWithConcurrentWriteTest() throws Exception {
+
+		BDDMockito.given(service.getVersion(1l)).willReturn(Optional.of(3l), Optional.of(4l));
+		BDDMockito.given(service.patch(1l, 3l, "Novo título", null)).willReturn(false);
+
+		mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1")).content("{\"title\":\"Novo título\"}")
+				.contentType(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_MATCH, "\"3\""))
+				.andExpect(status().isPreconditionFailed());
+	}
+
+	@Test
+	@DisplayName("Deve retornar 404 na atualização parcial com If-Match de um livro inexistente.")
+	public void patchInexistentBookWithIfMatchTest() throws Exception {
+
+		BDDMockito.given(service.getVersion(1l)).willReturn(Optional.empty());
+
+		mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1")).content("{\"author\":\"Fulano\"}")
+				.contentType(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_MATCH, "\"3\""))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	@DisplayName("Deve recusar atualização parcial sem campos.")
+	public void patchBookWithoutFieldsTest() throws Exception {
+
+		mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1")).content("{\"title\":\" \"}")
+				.contentType(MediaType.APPLICATION_JSON)).andExpect(status().isBadRequest());
+
+		Mockito.verify(service, Mockito.never()).patch(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.any());
+	}
+
+	@Test
+	@DisplayName("Deve recusar atualização parcial com título maior que a coluna.")
+	public void patchBookWithTooLongTitleTest() throws Exception {
+
+		String title = new String(new char[256]).replace('\0', 'a');
+		mvc.perform(MockMvcRequestBuilders.patch(BOOK_API.concat("/1")).content("{\"title\":\"" + title + "\"}")
+				.contentType(MediaType.APPLICATION_JSON)).andExpect(status().isBadRequest());
+
+		Mockito.verify(service, Mockito.never()).patch(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.any());
+	}
+
 	@Test
 	@DisplayName("Deve filtrar livros.")
 	public void findBooksTest() throws Exception {
@@ -229,6 +443,114 @@ public class BookControllerTest {
 			
 	}
 
+	@Test
+	@DisplayName("Deve filtrar livros sem o count quando o cliente pedir count=none.")
+	public void findBooksWithoutCountTest() throws Exception {
+
+		Book book = Book.builder().id(1l).title(createNewBook().getTitle()).author(createNewBook().getAuthor())
+				.isbn(createNewBook().getIsbn()).build();
+
+		BDDMockito.given(service.findSlice(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+				.willReturn(new SliceImpl<>(java.util.Arrays.asList(book), PageRequest.of(0, 1), true));
+
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=Mestre&size=1&count=none")))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("content", Matchers.hasSize(1)))
+			.andExpect(jsonPath("last").value(false))
+			.andExpect(jsonPath("totalElements").doesNotExist());
+
+		Mockito.verify(service, Mockito.never()).find(Mockito.any(Book.class), Mockito.any(Pageable.class));
+	}
+
+	@Test
+	@DisplayName("Deve filtrar livros com total aproximado e recusar um modo de contagem inválido.")
+	public void findBooksApproximateCountTest() throws Exception {
+
+		Book book = Book.builder().id(1l).title(createNewBook().getTitle()).author(createNewBook().getAuthor())
+				.isbn(createNewBook().getIsbn()).build();
+
+		BDDMockito.given(service.findApproximate(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+				.willReturn(new PageImpl<>(java.util.Arrays.asList(book), PageRequest.of(0, 1), 500));
+
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=Mestre&size=1&count=approximate")))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("content", Matchers.hasSize(1)))
+			.andExpect(jsonPath("totalElements").value(500));
+
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?title=Mestre&count=talvez")))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("errors[0]").value("Invalid count, use exact, approximate or none"));
+	}
+
+	@Test
+	@DisplayName("Deve filtrar livros por cursor, sem total de registros.")
+	public void findBooksAfterCursorTest() throws Exception {
+
+		Book book = Book.builder().id(42l).title(createNewBook().getTitle()).author(createNewBook().getAuthor())
+				.isbn(createNewBook().getIsbn()).build();
+
+		BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.eq(0l), Mockito.eq(1)))
+				.willReturn(new SliceImpl<>(java.util.Arrays.asList(book), PageRequest.of(0, 1), true));
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+			.get(BOOK_API.concat("?title=Mestre&after=&size=1"))
+			.accept(MediaType.APPLICATION_JSON);
+
+		mvc.perform(request)
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("content", Matchers.hasSize(1)))
+			.andExpect(jsonPath("hasNext").value(true))
+			.andExpect(jsonPath("next").value(Cursors.encode(42l)))
+			.andExpect(jsonPath("totalElements").doesNotExist());
+
+		Mockito.when(service.findAfter(Mockito.any(Book.class), Mockito.eq(42l), Mockito.eq(1)))
+				.thenReturn(new SliceImpl<>(java.util.Collections.emptyList(), PageRequest.of(0, 1), false));
+
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?after=" + Cursors.encode(42l) + "&size=1")))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("content", Matchers.hasSize(0)))
+			.andExpect(jsonPath("hasNext").value(false))
+			.andExpect(jsonPath("next").doesNotExist());
+	}
+
+	@Test
+	@DisplayName("Deve retornar bad request quando o cursor for inválido.")
+	public void findBooksInvalidCursorTest() throws Exception {
+
+		mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?after=invalido")))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("errors[0]").value("Invalid cursor"));
+	}
+
+	@Test
+	@DisplayName("Deve importar livros em massa a partir de um arquivo CSV.")
+	public void importBooksTest() throws Exception {
+
+		BookImportResultDTO result = BookImportResultDTO.builder().read(2).imported(1).rejected(1)
+				.errors(java.util.Arrays.asList(new BookImportErrorDTO(3, "001", "Isbn já cadastrado."))).build();
+		BDDMockito.given(importService.importBooks(Mockito.any(Reader.class), Mockito.eq(BookImportFormat.CSV)))
+				.willReturn(result);
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(BOOK_API.concat("/import"))
+				.contentType("text/csv").content("title,author,isbn\nLivro,Autor,002\nOutro,Autor,001\n");
+
+		mvc.perform(request)
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("imported").value(1))
+			.andExpect(jsonPath("rejected").value(1))
+			.andExpect(jsonPath("errors[0].line").value(3))
+			.andExpect(jsonPath("errors[0].message").value("Isbn já cadastrado."));
+	}
+
+	@Test
+	@DisplayName("Deve recusar a importação em formato não suportado.")
+	public void importBooksUnsupportedFormatTest() throws Exception {
+
+		mvc.perform(MockMvcRequestBuilders.post(BOOK_API.concat("/import")).contentType(MediaType.APPLICATION_XML)
+				.content("<books/>"))
+			.andExpect(status().isUnsupportedMediaType());
+	}
+
 	private BookDTO createNewBook() {
 		return BookDTO.builder().author("Douglas").title("O Mestre do Bug").isbn("001").build();
 	}
@@ -1,5 +1,6 @@
 package com.dagurasu.libraryapi.api.resource;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
@@ -7,12 +8,17 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.BDDMockito;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +28,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -29,11 +36,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import com.dagurasu.libraryapi.api.dto.LoanBatchItemDTO;
 import com.dagurasu.libraryapi.api.dto.LoanDTO;
 import com.dagurasu.libraryapi.api.dto.LoanFilterDTO;
 import com.dagurasu.libraryapi.api.dto.ReturnedLoanDTO;
 import com.dagurasu.libraryapi.api.model.entity.Book;
 import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
 import com.dagurasu.libraryapi.api.service.BookService;
 import com.dagurasu.libraryapi.api.service.LoanService;
 import com.dagurasu.libraryapi.api.service.LoanServiceTest;
@@ -115,15 +124,62 @@ public class LoanControllerTest {
 
 	}
 	
+	@Test
+	@DisplayName("Deve realizar empréstimos em lote, com resultado por item.")
+	public void createLoanBatchTest() throws Exception {
+
+		List<LoanDTO> dtos = Arrays.asList(
+				LoanDTO.builder().isbn("123").customer("Fulano").email("fulano@email.com").build(),
+				LoanDTO.builder().isbn("999").customer("Ciclano").build());
+		String json = new ObjectMapper().writeValueAsString(dtos);
+
+		Book book = Book.builder().id(1l).isbn("123").build();
+		BDDMockito.given(bookService.getBooksByIsbn(new HashSet<>(Arrays.asList("123", "999"))))
+				.willReturn(Collections.singletonMap("123", book));
+		BDDMockito.given(loanService.saveAll(Mockito.anyList())).willReturn(Arrays.asList(
+				LoanBatchItemDTO.ok(0, 10l), LoanBatchItemDTO.failed(1, null, "Book not found for passed isbn")));
+
+		mvc.perform(MockMvcRequestBuilders.post(LOAN_API.concat("/batch")).contentType(MediaType.APPLICATION_JSON)
+				.content(json))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("[0].id").value(10))
+			.andExpect(jsonPath("[1].error").value("Book not found for passed isbn"));
+
+		ArgumentCaptor<List<Loan>> captor = ArgumentCaptor.forClass(List.class);
+		verify(loanService).saveAll(captor.capture());
+		assertThat(captor.getValue()).extracting(Loan::getBook).containsExactly(book, null);
+		assertThat(captor.getValue().get(0).getCustomerEmail()).isEqualTo("fulano@email.com");
+	}
+
+	@Test
+	@DisplayName("Deve devolver livros em lote.")
+	public void returnLoanBatchTest() throws Exception {
+
+		BDDMockito.given(loanService.returnAll(Arrays.asList(1l, 2l)))
+				.willReturn(Arrays.asList(LoanBatchItemDTO.ok(0, 1l), LoanBatchItemDTO.failed(1, 2l, "Loan not found")));
+
+		mvc.perform(patch(LOAN_API.concat("/batch")).contentType(MediaType.APPLICATION_JSON).content("[1,2]"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("[0].error").doesNotExist())
+			.andExpect(jsonPath("[1].error").value("Loan not found"));
+	}
+
+	@Test
+	@DisplayName("Deve recusar lote vazio.")
+	public void emptyBatchTest() throws Exception {
+
+		mvc.perform(patch(LOAN_API.concat("/batch")).contentType(MediaType.APPLICATION_JSON).content("[]"))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("errors[0]").value("Batch size must be between 1 and 500"));
+	}
+
 	@Test
 	@DisplayName("Deve retornar um livro.")
 	public void returnBookTest() throws Exception {
 		
 		ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
 		
-		Loan loan = Loan.builder().id(1l).build();
-		
-		BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Optional.of(loan));
+		BDDMockito.given(loanService.returnLoan(1l, true)).willReturn(true);
 
 		String json = new ObjectMapper().writeValueAsString(dto);
 		
@@ -133,7 +189,7 @@ public class LoanControllerTest {
 				.content(json)
 				).andExpect(status().isOk());
 		
-		verify(loanService, Mockito.times(1)).update(loan);
+		verify(loanService, Mockito.times(1)).returnLoan(1l, true);
 	}
 	
 	@Test
@@ -142,7 +198,7 @@ public class LoanControllerTest {
 		
 		ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
 		
-		BDDMockito.given(loanService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+		BDDMockito.given(loanService.returnLoan(Mockito.anyLong(), Mockito.anyBoolean())).willReturn(false);
 		String json = new ObjectMapper().writeValueAsString(dto);
 		
 		mvc.perform(patch(LOAN_API.concat("/1"))
@@ -157,18 +213,13 @@ public class LoanControllerTest {
 	@DisplayName("Deve filtrar empréstimos.")
 	public void findLoansTest() throws Exception {
 
-		Long id = 1l;
-		Loan loan = LoanServiceTest.createLoan();
-		loan.setId(id);
-
-		Book book = Book.builder().id(1l).isbn("321").build();
-		loan.setBook(book);
+		LoanView loan = LoanServiceTest.createLoanView();
 		
 		BDDMockito.given(loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
-				.willReturn(new PageImpl<Loan>(java.util.Arrays.asList(loan), PageRequest.of(0, 10), 1));
+				.willReturn(new PageImpl<LoanView>(java.util.Arrays.asList(loan), PageRequest.of(0, 10), 1));
 
 		String queryString = String.format("?isbn=%s&customer%s&page=0&size=10", 
-				book.getIsbn(), loan.getCustomer());
+				loan.getBookIsbn(), loan.getCustomer());
 		
 		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
 			.get(LOAN_API.concat(queryString))
@@ -178,9 +229,56 @@ public class LoanControllerTest {
 			.andExpect(status().isOk())
 			.andExpect(jsonPath("content", Matchers.hasSize(1)))
 			.andExpect(jsonPath("totalElements").value(1))
+			.andExpect(jsonPath("content[0].book.isbn").value("321"))
 			.andExpect(jsonPath("pageable.pageSize").value(10))
 			.andExpect(jsonPath("pageable.pageNumber").value(0));
 			
 	}
 
+	@Test
+	@DisplayName("Deve filtrar empréstimos sem o count, ou com o total aproximado.")
+	public void findLoansCountModesTest() throws Exception {
+
+		LoanView loan = LoanServiceTest.createLoanView();
+
+		BDDMockito.given(loanService.findSlice(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+				.willReturn(new SliceImpl<LoanView>(java.util.Arrays.asList(loan), PageRequest.of(0, 10), false));
+		BDDMockito.given(loanService.findApproximate(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+				.willReturn(new PageImpl<LoanView>(java.util.Arrays.asList(loan), PageRequest.of(0, 10), 1));
+
+		mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("?customer=Fulano&size=10&count=none")))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("content", Matchers.hasSize(1)))
+			.andExpect(jsonPath("last").value(true))
+			.andExpect(jsonPath("totalElements").doesNotExist());
+
+		mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("?customer=Fulano&size=10&count=APPROXIMATE")))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("totalElements").value(1));
+
+		Mockito.verify(loanService, Mockito.never()).find(Mockito.any(LoanFilterDTO.class),
+				Mockito.any(Pageable.class));
+	}
+
+	@Test
+	@DisplayName("Deve filtrar empréstimos por cursor.")
+	public void findLoansAfterCursorTest() throws Exception {
+
+		LoanView loan = new LoanView(7l, "Fulano", null, LocalDate.now(), null, 1l, "Título", "Autor", "321");
+
+		BDDMockito.given(loanService.findAfter(Mockito.any(LoanFilterDTO.class), Mockito.eq(3l), Mockito.eq(10)))
+				.willReturn(new SliceImpl<LoanView>(java.util.Arrays.asList(loan), PageRequest.of(0, 10), true));
+
+		MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+			.get(LOAN_API.concat("?customer=Fulano&after=" + Cursors.encode(3l) + "&size=10"))
+			.accept(MediaType.APPLICATION_JSON);
+
+		mvc.perform(request)
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("content", Matchers.hasSize(1)))
+			.andExpect(jsonPath("content[0].id").value(7))
+			.andExpect(jsonPath("hasNext").value(true))
+			.andExpect(jsonPath("next").value(Cursors.encode(7l)));
+	}
+
 }
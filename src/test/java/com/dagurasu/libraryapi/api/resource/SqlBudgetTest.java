@@ -0,0 +1,122 @@
+package com.dagurasu.libraryapi.api.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.repository.BookRepository;
+import com.dagurasu.libraryapi.api.model.repository.LoanRepository;
+import com.dagurasu.libraryapi.config.sql.SqlBudget;
+import com.dagurasu.libraryapi.config.sql.SqlStatsEndpoint;
+import com.dagurasu.libraryapi.config.sql.SqlStatsEndpoint.EndpointSqlStats;
+import com.dagurasu.libraryapi.config.sql.SqlStatementCounter.Recording;
+
+/**
+ * Orçamento de comandos SQL das listagens, com o contexto completo e o banco
+ * H2: o número de comandos não pode crescer com o tamanho da página.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class SqlBudgetTest {
+
+	static final String CUSTOMER = "Cliente do orçamento";
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	BookRepository bookRepository;
+
+	@Autowired
+	LoanRepository loanRepository;
+
+	@Autowired
+	SqlStatsEndpoint sqlStats;
+
+	static Book book;
+
+	@BeforeEach
+	public void seed() {
+		if (book != null) {
+			return;
+		}
+		List<Loan> loans = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Book saved = bookRepository.save(Book.builder().title("Orçamento " + i).author("Fulano")
+					.isbn("budget-" + i).build());
+			if (book == null) {
+				book = saved;
+			}
+			loans.add(Loan.builder().book(saved).customer(CUSTOMER).customerEmail("cliente@email.com")
+					.loanDate(LocalDate.now()).dueDate(LocalDate.now().plusDays(3)).build());
+		}
+		loanRepository.insertAll(loans);
+	}
+
+	@Test
+	@DisplayName("A listagem de empréstimos deve usar o mesmo número de comandos para qualquer tamanho de página.")
+	public void loanListingBudgetTest() throws Exception {
+		Recording small = SqlBudget.assertAtMost(2, () -> mvc.perform(get("/api/loans")
+				.param("customer", CUSTOMER).param("size", "5")).andExpect(status().isOk())
+				.andExpect(jsonPath("content.length()").value(5)));
+		Recording large = SqlBudget.assertAtMost(2, () -> mvc.perform(get("/api/loans")
+				.param("customer", CUSTOMER).param("size", "20")).andExpect(status().isOk())
+				.andExpect(jsonPath("content.length()").value(20)));
+
+		assertThat(large.getStatements()).isEqualTo(small.getStatements());
+	}
+
+	@Test
+	@DisplayName("Sem o count, ou com o total aproximado já em cache, a listagem deve usar um único comando.")
+	public void loanListingWithoutCountBudgetTest() throws Exception {
+		SqlBudget.assertAtMost(1, () -> mvc.perform(get("/api/loans").param("customer", CUSTOMER)
+				.param("size", "5").param("count", "none")).andExpect(status().isOk())
+				.andExpect(jsonPath("content.length()").value(5))
+				.andExpect(jsonPath("totalElements").doesNotExist()));
+
+		SqlBudget.assertAtMost(2, () -> mvc.perform(get("/api/loans").param("customer", CUSTOMER)
+				.param("size", "5").param("count", "approximate")).andExpect(status().isOk())
+				.andExpect(jsonPath("totalElements").value(20)));
+		SqlBudget.assertAtMost(1, () -> mvc.perform(get("/api/loans").param("customer", CUSTOMER)
+				.param("size", "5").param("page", "1").param("count", "approximate")).andExpect(status().isOk())
+				.andExpect(jsonPath("totalElements").value(20)));
+	}
+
+	@Test
+	@DisplayName("A listagem de empréstimos do livro deve caber no orçamento de comandos.")
+	public void bookLoansBudgetTest() throws Exception {
+		SqlBudget.assertAtMost(3, () -> mvc.perform(get("/api/books/{id}/loans", book.getId()))
+				.andExpect(status().isOk()).andExpect(jsonPath("content.length()").value(1)));
+	}
+
+	@Test
+	@DisplayName("Deve acumular os comandos por endpoint no /actuator/sqlstats.")
+	public void endpointStatsTest() throws Exception {
+		mvc.perform(get("/api/loans").param("customer", CUSTOMER)).andExpect(status().isOk());
+
+		EndpointSqlStats stats = sqlStats.stats().get("GET /api/loans");
+		assertThat(stats).isNotNull();
+		assertThat(stats.getRequests()).isGreaterThanOrEqualTo(1);
+		assertThat(stats.getMaxStatements()).isBetween(1l, 2l);
+
+		mvc.perform(get("/actuator/sqlstats")).andExpect(status().isOk())
+				.andExpect(jsonPath("['GET /api/loans'].requests").isNumber());
+	}
+}
@@ -0,0 +1,127 @@
+package com.dagurasu.libraryapi.api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.repository.BookRepository;
+import com.dagurasu.libraryapi.api.service.imp.BookServiceImpl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class BookCacheTest {
+
+	@Autowired
+	BookService service;
+
+	@SpyBean
+	BookRepository repository;
+
+	@Autowired
+	CacheManager cacheManager;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@BeforeEach
+	public void clearCaches() {
+		cacheManager.getCache(BookServiceImpl.BOOKS_CACHE).clear();
+	}
+
+	@Test
+	@DisplayName("Deve ler o livro do cache a partir da segunda consulta por id.")
+	public void getByIdCachedTest() {
+		Book book = service.save(newBook("cache-1"));
+		double hits = hits(BookServiceImpl.BOOKS_CACHE);
+
+		service.getById(book.getId());
+		service.getById(book.getId());
+
+		Mockito.verify(repository, Mockito.times(1)).findById(book.getId());
+		assertThat(hits(BookServiceImpl.BOOKS_CACHE)).isEqualTo(hits + 1);
+	}
+
+	@Test
+	@DisplayName("Deve invalidar o cache ao atualizar o livro.")
+	public void updateEvictsTest() {
+		Book book = service.save(newBook("cache-2"));
+		service.getBookByIsbn("cache-2");
+		Book cached = service.getById(book.getId()).get();
+
+		service.update(cached.toBuilder().title("Novo título").build());
+
+		assertThat(service.getById(book.getId()).get().getTitle()).isEqualTo("Novo título");
+		assertThat(service.getBookByIsbn("cache-2").get().getTitle()).isEqualTo("Novo título");
+		assertThat(cached.getTitle()).isEqualTo("Cache");
+	}
+
+	@Test
+	@DisplayName("Deve invalidar o cache na atualização parcial e na exclusão.")
+	public void patchAndDeleteEvictTest() {
+		Book book = service.save(newBook("cache-3"));
+		service.getById(book.getId());
+
+		service.patch(book.getId(), null, null, "Outro autor");
+		Book patched = service.getById(book.getId()).get();
+		assertThat(patched.getAuthor()).isEqualTo("Outro autor");
+
+		service.delete(patched);
+		assertThat(service.getById(book.getId())).isEmpty();
+	}
+
+	@Test
+	@DisplayName("Não deve guardar no cache a ausência de um livro.")
+	public void missingBookNotCachedTest() {
+		Book book = service.save(newBook("cache-4"));
+		service.delete(book);
+		assertThat(service.getById(book.getId())).isEmpty();
+
+		assertThat(service.getById(book.getId())).isEmpty();
+		Mockito.verify(repository, Mockito.times(2)).findById(book.getId());
+	}
+
+	@Test
+	@DisplayName("Deve reler do banco e renovar o cache quando outra réplica alterar o livro.")
+	public void getCurrentByIdRefreshesCacheTest() {
+		Book book = service.save(newBook("cache-5"));
+		service.getById(book.getId());
+		/* escrita de outra réplica: não passa pelo cache desta */
+		repository.patch(book.getId(), null, "Outro título", null);
+
+		assertThat(service.getById(book.getId()).get().getTitle()).isEqualTo("Cache");
+		Book current = service.getCurrentById(book.getId()).get();
+
+		assertThat(current.getTitle()).isEqualTo("Outro título");
+		assertThat(current.getVersion()).isEqualTo(book.getVersion() + 1);
+		assertThat(service.getById(book.getId()).get().getTitle()).isEqualTo("Outro título");
+	}
+
+	@Test
+	@DisplayName("A busca por isbn não deve usar o cache.")
+	public void getBookByIsbnNotCachedTest() {
+		Book book = service.save(newBook("cache-6"));
+		service.getBookByIsbn("cache-6");
+		repository.deleteById(book.getId());
+
+		assertThat(service.getBookByIsbn("cache-6")).isEmpty();
+	}
+
+	private double hits(String cache) {
+		return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", "hit").functionCounter().count();
+	}
+
+	private static Book newBook(String isbn) {
+		return Book.builder().title("Cache").author("Fulano").isbn(isbn).build();
+	}
+}
@@ -0,0 +1,159 @@
+package com.dagurasu.libraryapi.api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.StringReader;
+import java.util.Collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.dagurasu.libraryapi.api.dto.BookImportErrorDTO;
+import com.dagurasu.libraryapi.api.dto.BookImportResultDTO;
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.service.importer.BookImportFormat;
+import com.dagurasu.libraryapi.exception.BusinessException;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = { "application.books.import.batch-size=2", "application.books.import.max-errors=3" })
+public class BookImportServiceTest {
+
+	@Autowired
+	BookImportService importService;
+
+	@Autowired
+	BookService bookService;
+
+	@SpyBean
+	NamedParameterJdbcTemplate jdbcTemplate;
+
+	@Test
+	@DisplayName("Deve importar um CSV em lotes, rejeitando linhas inválidas e ISBNs duplicados.")
+	public void importCsvTest() {
+		bookService.save(Book.builder().title("Existente").author("Fulano").isbn("imp-csv-0").build());
+
+		String csv = "isbn,title,author\n"
+				+ "imp-csv-1,\"Livro, com vírgula\",Fulano\n"
+				+ "imp-csv-1,Repetido,Fulano\n"
+				+ "imp-csv-2,Segundo,Ciclano\n"
+				+ "imp-csv-0,Já existe,Fulano\n"
+				+ "\n"
+				+ "imp-csv-3,,Beltrano\n"
+				+ "imp-csv-4,\"sem fim,Beltrano\n"
+				+ "imp-csv-5,Quinto,Beltrano\n";
+
+		BookImportResultDTO result = importService.importBooks(new StringReader(csv), BookImportFormat.CSV);
+
+		assertThat(result.getRead()).isEqualTo(7);
+		assertThat(result.getImported()).isEqualTo(3);
+		assertThat(result.getRejected()).isEqualTo(4);
+		// o relatório guarda no máximo 3 erros; o ISBN já cadastrado é o último a ser detectado
+		assertThat(result.isErrorsTruncated()).isTrue();
+		assertThat(result.getErrors()).extracting(BookImportErrorDTO::getLine).containsExactly(3l, 7l, 8l);
+		assertThat(result.getErrors().get(0).getMessage()).isEqualTo("Isbn duplicado no arquivo.");
+		assertThat(result.getErrors().get(1).getMessage()).startsWith("title:");
+		assertThat(result.getErrors().get(2).getMessage()).isEqualTo("Linha CSV malformada.");
+		assertThat(bookService.getBookByIsbn("imp-csv-0").get().getTitle()).isEqualTo("Existente");
+
+		assertThat(bookService.getBookByIsbn("imp-csv-1").get().getTitle()).isEqualTo("Livro, com vírgula");
+		assertThat(bookService.getBookByIsbn("imp-csv-5")).isPresent();
+		assertThat(bookService.getBookByIsbn("imp-csv-4")).isNotPresent();
+	}
+
+	@Test
+	@DisplayName("Deve importar NDJSON e rejeitar duplicados de lotes anteriores.")
+	public void importNdjsonTest() {
+		String ndjson = "{\"title\":\"Um\",\"author\":\"Fulano\",\"isbn\":\"imp-json-1\"}\n"
+				+ "{\"title\":\"Dois\",\"author\":\"Fulano\",\"isbn\":\"imp-json-2\"}\n"
+				+ "{\"title\":\"Um de novo\",\"author\":\"Fulano\",\"isbn\":\"imp-json-1\"}\n"
+				+ "{invalido\n"
+				+ "null\n";
+
+		BookImportResultDTO result = importService.importBooks(new StringReader(ndjson), BookImportFormat.NDJSON);
+
+		assertThat(result.getImported()).isEqualTo(2);
+		assertThat(result.getErrors()).extracting(BookImportErrorDTO::getMessage)
+				.containsExactly("Isbn já cadastrado.", "JSON inválido.", "JSON inválido.");
+		assertThat(bookService.getBookByIsbn("imp-json-2")).isPresent();
+	}
+
+	@Test
+	@DisplayName("Deve rejeitar só as linhas cujo ISBN foi cadastrado entre a conferência e o insert do lote.")
+	public void importConcurrentDuplicateTest() {
+		bookService.save(Book.builder().title("Concorrente").author("Fulano").isbn("imp-race-2").build());
+		/* a conferência não enxerga o cadastro concorrente */
+		Mockito.doReturn(Collections.emptyList()).when(jdbcTemplate).queryForList(Mockito.anyString(),
+				Mockito.any(SqlParameterSource.class), Mockito.eq(String.class));
+
+		String csv = "isbn,title,author\n"
+				+ "imp-race-1,Primeiro,Fulano\n"
+				+ "imp-race-2,Segundo,Fulano\n"
+				+ "imp-race-3,Terceiro,Fulano\n";
+
+		BookImportResultDTO result = importService.importBooks(new StringReader(csv), BookImportFormat.CSV);
+
+		assertThat(result.getImported()).isEqualTo(2);
+		assertThat(result.getErrors()).extracting(BookImportErrorDTO::getLine).containsExactly(3l);
+		assertThat(result.getErrors().get(0).getMessage()).isEqualTo("Isbn já cadastrado.");
+		assertThat(bookService.getBookByIsbn("imp-race-1")).isPresent();
+		assertThat(bookService.getBookByIsbn("imp-race-2").get().getTitle()).isEqualTo("Concorrente");
+		assertThat(bookService.getBookByIsbn("imp-race-3")).isPresent();
+	}
+
+	@Test
+	@DisplayName("Deve rejeitar linhas com campos maiores que as colunas sem derrubar a importação.")
+	public void importTooLongTitleTest() {
+		String csv = "isbn,title,author\n"
+				+ "imp-long-1,Curto,Fulano\n"
+				+ "imp-long-2," + new String(new char[300]).replace('\0', 'a') + ",Fulano\n";
+
+		BookImportResultDTO result = importService.importBooks(new StringReader(csv), BookImportFormat.CSV);
+
+		assertThat(result.getImported()).isEqualTo(1);
+		assertThat(result.getErrors()).extracting(BookImportErrorDTO::getLine).containsExactly(3l);
+		assertThat(result.getErrors().get(0).getMessage()).startsWith("title:");
+		assertThat(bookService.getBookByIsbn("imp-long-1")).isPresent();
+		assertThat(bookService.getBookByIsbn("imp-long-2")).isNotPresent();
+	}
+
+	@Test
+	@DisplayName("Deve refazer linha a linha o lote recusado pelo banco e rejeitar só a linha com problema.")
+	public void importDataIntegrityViolationTest() {
+		Mockito.doThrow(new DataIntegrityViolationException("Value too long")).when(jdbcTemplate)
+				.batchUpdate(Mockito.anyString(), Mockito.any(SqlParameterSource[].class));
+		Mockito.doThrow(new DataIntegrityViolationException("Value too long")).when(jdbcTemplate).update(
+				Mockito.anyString(), Mockito.<SqlParameterSource>argThat(p -> "imp-dive-2".equals(p.getValue("isbn"))));
+
+		String csv = "isbn,title,author\n"
+				+ "imp-dive-1,Primeiro,Fulano\n"
+				+ "imp-dive-2,Segundo,Fulano\n";
+
+		BookImportResultDTO result = importService.importBooks(new StringReader(csv), BookImportFormat.CSV);
+
+		assertThat(result.getImported()).isEqualTo(1);
+		assertThat(result.getErrors()).extracting(BookImportErrorDTO::getMessage)
+				.containsExactly("Linha recusada pelo banco de dados.");
+		assertThat(result.getErrors().get(0).getIsbn()).isEqualTo("imp-dive-2");
+		assertThat(bookService.getBookByIsbn("imp-dive-1")).isPresent();
+		assertThat(bookService.getBookByIsbn("imp-dive-2")).isNotPresent();
+	}
+
+	@Test
+	@DisplayName("Deve recusar CSV sem as colunas obrigatórias no cabeçalho.")
+	public void importCsvWithoutHeaderTest() {
+		Throwable exception = catchThrowable(() -> importService
+				.importBooks(new StringReader("imp-1,Livro,Autor\n"), BookImportFormat.CSV));
+
+		assertThat(exception).isInstanceOf(BusinessException.class)
+				.hasMessage("Cabeçalho CSV deve conter as colunas title, author e isbn.");
+	}
+}
@@ -5,26 +5,32 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import org.assertj.core.api.Assertions;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import com.dagurasu.libraryapi.api.model.entity.Book;
 import com.dagurasu.libraryapi.api.model.repository.BookRepository;
+import com.dagurasu.libraryapi.api.service.count.SearchCounts;
 import com.dagurasu.libraryapi.api.service.imp.BookServiceImpl;
 import com.dagurasu.libraryapi.exception.BusinessException;
 
@@ -39,7 +45,7 @@ public class BookServiceTest {
 
 	@BeforeEach
 	public void init() {
-		this.service = new BookServiceImpl(repository);
+		this.service = new BookServiceImpl(repository, new SearchCounts(60_000, 1_000));
 	}
 
 	@Test
@@ -176,6 +182,30 @@ public class BookServiceTest {
 
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	@DisplayName("Deve filtrar livros com total aproximado, contando uma vez só por filtro.")
+	public void findBookApproximateTest() {
+
+		Book book = createValidBook();
+		PageRequest pageRequest = PageRequest.of(0, 1);
+
+		Mockito.when(repository.findByPatternsAfter(Mockito.eq(0l), Mockito.eq("%as aventuras%"), Mockito.isNull(),
+				Mockito.isNull(), Mockito.eq(pageRequest)))
+				.thenReturn(new SliceImpl<>(Arrays.asList(book), pageRequest, true));
+		Mockito.when(repository.count(Mockito.any(Example.class))).thenReturn(500l);
+
+		Book filter = Book.builder().title("As Aventuras").build();
+		Page<Book> first = service.findApproximate(filter, pageRequest);
+		Page<Book> second = service.findApproximate(Book.builder().title("as aventuras").build(), pageRequest);
+
+		assertThat(first.getContent()).containsExactly(book);
+		assertThat(first.getTotalElements()).isEqualTo(500);
+		assertThat(second.getTotalElements()).isEqualTo(500);
+		verify(repository, times(1)).count(Mockito.any(Example.class));
+		verify(repository, Mockito.never()).findAll(Mockito.any(Example.class), Mockito.any(Pageable.class));
+	}
+
 	@Test
 	@DisplayName("Deve obter um livro pelo isbn.")
 	public void getBookByIsbn() {
@@ -192,6 +222,27 @@ public class BookServiceTest {
 		verify(repository, times(1)).findByIsbn(isbn);
 	}
 
+	@Test
+	@DisplayName("Deve lançar erro de negócio quando o isbn for cadastrado por outra réplica entre a consulta e o insert.")
+	public void saveBookWithConcurrentDuplicatedIsbnTest() {
+
+		Book book = createValidBook();
+		Mockito.when(repository.existsByIsbn("123")).thenReturn(false);
+		Mockito.when(repository.save(book)).thenThrow(violation("PUBLIC.UK_BOOK_ISBN_INDEX_1 ON PUBLIC.BOOK(ISBN)"));
+
+		Throwable exception = Assertions.catchThrowable(() -> service.save(book));
+		assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Isbn já cadastrado.");
+
+		Mockito.doThrow(violation("PUBLIC.CONSTRAINT_INDEX_2 ON PUBLIC.BOOK(ID)")).when(repository).save(book);
+		assertThat(Assertions.catchThrowable(() -> service.save(book)))
+				.isInstanceOf(DataIntegrityViolationException.class);
+	}
+
+	private static DataIntegrityViolationException violation(String constraint) {
+		return new DataIntegrityViolationException("could not execute statement",
+				new ConstraintViolationException("could not execute statement", new SQLException(), constraint));
+	}
+
 	private Book createValidBook() {
 		return Book.builder().isbn("123").author("Fulano").title("As Aventuras").build();
 	}
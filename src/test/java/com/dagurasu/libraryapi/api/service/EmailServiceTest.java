@@ -0,0 +1,163 @@
+package com.dagurasu.libraryapi.api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.mail.Address;
+import javax.mail.SendFailedException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import com.dagurasu.libraryapi.api.service.imp.EmailServiceImpl;
+import com.icegreen.greenmail.util.GreenMail;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+public class EmailServiceTest {
+
+	GreenMail greenMail;
+
+	EmailServiceImpl service;
+
+	@BeforeEach
+	public void init() {
+		greenMail = new GreenMail(ServerSetupTest.SMTP);
+		greenMail.start();
+	}
+
+	@AfterEach
+	public void stop() {
+		if (service != null) {
+			service.shutdown();
+		}
+		greenMail.stop();
+	}
+
+	@Test
+	@DisplayName("Deve enviar os e-mails em lotes para todos os destinatários.")
+	public void sendEmailsInBatchesTest() throws Exception {
+		JavaMailSenderImpl sender = new JavaMailSenderImpl();
+		sender.setHost("localhost");
+		sender.setPort(ServerSetupTest.SMTP.getPort());
+		sender.setDefaultEncoding("UTF-8");
+		service = new EmailServiceImpl(sender, "mail@library-api.com", 3, 2, 1000, 3, 10);
+
+		List<String> mailList = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			mailList.add("cliente" + i + "@email.com");
+		}
+
+		EmailDispatchResult result = service.sendEmails("Livro com empréstimo atrasado", "Atrasado", mailList);
+
+		assertThat(result.getSent()).isEqualTo(10);
+		assertThat(result.getFailed()).isZero();
+		// 4 lotes (3 + 3 + 3 + 1), uma cópia entregue por destinatário
+		MimeMessage[] received = greenMail.getReceivedMessages();
+		assertThat(received).hasSize(10);
+		assertThat(received[0].getSubject()).isEqualTo("Livro com empréstimo atrasado");
+		// destinatários em cópia oculta: nenhum vê o endereço dos outros
+		assertThat(received[0].getHeader("To")).isNull();
+		assertThat(received[0].getHeader("Bcc")).isNull();
+	}
+
+	@Test
+	@DisplayName("Deve tentar novamente os lotes com falha transitória.")
+	public void retryTransientFailureTest() {
+		JavaMailSender sender = mock(JavaMailSender.class);
+		doThrow(new MailSendException("timeout")).doNothing().when(sender).send(any(SimpleMailMessage.class));
+		service = new EmailServiceImpl(sender, "mail@library-api.com", 50, 1, 1000, 3, 1);
+
+		EmailDispatchResult result = service.sendEmails("Aviso", "Atrasado", Arrays.asList("a@email.com", "b@email.com"));
+
+		assertThat(result.getSent()).isEqualTo(2);
+		assertThat(result.getFailed()).isZero();
+		verify(sender, times(2)).send(any(SimpleMailMessage.class));
+	}
+
+	@Test
+	@DisplayName("Não deve tentar novamente falhas permanentes e deve reportar os destinatários.")
+	public void permanentFailureTest() {
+		JavaMailSender sender = mock(JavaMailSender.class);
+		doThrow(new MailAuthenticationException("bad credentials")).when(sender).send(any(SimpleMailMessage.class));
+		service = new EmailServiceImpl(sender, "mail@library-api.com", 50, 1, 1000, 3, 1);
+
+		EmailDispatchResult result = service.sendEmails("Aviso", "Atrasado", Arrays.asList("a@email.com", "b@email.com"));
+
+		assertThat(result.getSent()).isZero();
+		assertThat(result.getFailed()).isEqualTo(2);
+		assertThat(result.getFailedRecipients()).containsExactly("a@email.com", "b@email.com");
+		verify(sender, times(1)).send(any(SimpleMailMessage.class));
+	}
+
+	@Test
+	@DisplayName("Deve reportar os endereços recusados e reenviar o lote só para os válidos.")
+	public void invalidAddressesTest() throws Exception {
+		JavaMailSender sender = mock(JavaMailSender.class);
+		SendFailedException invalid = new SendFailedException("Invalid Addresses", null, new Address[0],
+				new Address[] { new InternetAddress("a@email.com") }, new Address[] { new InternetAddress("b@email.com") });
+		doThrow(new MailSendException("Invalid Addresses", invalid)).doNothing().when(sender)
+				.send(any(SimpleMailMessage.class));
+		service = new EmailServiceImpl(sender, "mail@library-api.com", 50, 1, 1000, 1, 1);
+
+		EmailDispatchResult result = service.sendEmails("Aviso", "Atrasado", Arrays.asList("a@email.com", "b@email.com"));
+
+		assertThat(result.getSent()).isEqualTo(1);
+		assertThat(result.getFailedRecipients()).containsExactly("b@email.com");
+		ArgumentCaptor<SimpleMailMessage> captor = ArgumentCaptor.forClass(SimpleMailMessage.class);
+		verify(sender, times(2)).send(captor.capture());
+		assertThat(captor.getAllValues().get(0).getTo()).isNull();
+		assertThat(captor.getAllValues().get(0).getBcc()).containsExactly("a@email.com", "b@email.com");
+		assertThat(captor.getAllValues().get(1).getBcc()).containsExactly("a@email.com");
+	}
+
+	@Test
+	@DisplayName("Não deve tentar novamente quando o servidor responde com erro 5xx.")
+	public void permanentServerFailureTest() {
+		JavaMailSender sender = mock(JavaMailSender.class);
+		doThrow(new MailSendException("rejected",
+				new SMTPSendFailedException("DATA", 554, "554 Message rejected", null, null, null, null)))
+				.when(sender).send(any(SimpleMailMessage.class));
+		service = new EmailServiceImpl(sender, "mail@library-api.com", 50, 1, 1000, 3, 1);
+
+		EmailDispatchResult result = service.sendEmails("Aviso", "Atrasado", Arrays.asList("a@email.com", "b@email.com"));
+
+		assertThat(result.getSent()).isZero();
+		assertThat(result.getFailedRecipients()).containsExactly("a@email.com", "b@email.com");
+		verify(sender, times(1)).send(any(SimpleMailMessage.class));
+	}
+
+	@Test
+	@DisplayName("Deve tentar novamente quando o servidor responde com erro 4xx.")
+	public void transientServerFailureTest() {
+		JavaMailSender sender = mock(JavaMailSender.class);
+		doThrow(new MailSendException("busy",
+				new SMTPSendFailedException("DATA", 451, "451 Try again later", null, null, null, null)))
+				.doNothing().when(sender).send(any(SimpleMailMessage.class));
+		service = new EmailServiceImpl(sender, "mail@library-api.com", 50, 1, 1000, 3, 1);
+
+		EmailDispatchResult result = service.sendEmails("Aviso", "Atrasado", Arrays.asList("a@email.com"));
+
+		assertThat(result.getSent()).isEqualTo(1);
+		assertThat(result.getFailed()).isZero();
+		verify(sender, times(2)).send(any(SimpleMailMessage.class));
+	}
+}
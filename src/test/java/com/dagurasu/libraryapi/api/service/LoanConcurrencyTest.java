@@ -0,0 +1,253 @@
+package com.dagurasu.libraryapi.api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.dagurasu.libraryapi.api.dto.LoanBatchItemDTO;
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.repository.BookRepository;
+import com.dagurasu.libraryapi.api.model.repository.LoanRepository;
+import com.dagurasu.libraryapi.api.service.count.SearchCounts;
+import com.dagurasu.libraryapi.api.service.imp.LoanServiceImpl;
+import com.dagurasu.libraryapi.api.service.outbox.NotificationOutbox;
+import com.dagurasu.libraryapi.exception.BusinessException;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class LoanConcurrencyTest {
+
+	static final int THREADS = 16;
+	static final int ROUNDS = 20;
+
+	@Autowired
+	LoanService service;
+
+	@Autowired
+	LoanRepository loanRepository;
+
+	@Autowired
+	BookRepository bookRepository;
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	NotificationOutbox outbox;
+
+	@Autowired
+	TransactionOperations transactions;
+
+	ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+	@AfterEach
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	@DisplayName("Não deve haver empréstimo duplo com requisições concorrentes para o mesmo livro.")
+	public void concurrentLoansForSameBookTest() throws Exception {
+
+		for (int round = 0; round < ROUNDS; round++) {
+			Book book = bookRepository.save(Book.builder().title("Concorrência").author("Fulano")
+					.isbn("concurrent-" + round).build());
+
+			List<Callable<Loan>> attempts = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				attempts.add(() -> service.save(newLoan(book)));
+			}
+
+			assertThat(race(attempts)).isEqualTo(1);
+			assertThat(openLoans(book)).isEqualTo(1);
+		}
+	}
+
+	@Test
+	@DisplayName("A restrição do banco deve impedir empréstimo duplo entre instâncias diferentes.")
+	public void concurrentLoansAcrossInstancesTest() throws Exception {
+
+		for (int round = 0; round < ROUNDS; round++) {
+			Book book = bookRepository.save(Book.builder().title("Concorrência").author("Fulano")
+					.isbn("instances-" + round).build());
+
+			List<Callable<Loan>> attempts = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				LoanService node = new LoanServiceImpl(loanRepository, outbox, transactions,
+						new SearchCounts(60_000, 1_000), 3);
+				attempts.add(() -> node.save(newLoan(book)));
+			}
+
+			assertThat(race(attempts)).isEqualTo(1);
+			assertThat(openLoans(book)).isEqualTo(1);
+		}
+	}
+
+	@Test
+	@DisplayName("Deve permitir novo empréstimo após a devolução.")
+	public void loanAfterReturnTest() {
+
+		Book book = bookRepository.save(Book.builder().title("Concorrência").author("Fulano").isbn("returned").build());
+
+		Loan loan = service.save(newLoan(book));
+		loan.setReturned(true);
+		service.update(loan);
+
+		assertThat(service.save(newLoan(book)).getId()).isNotNull();
+		assertThat(openLoans(book)).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Deve realizar e devolver empréstimos em lote, com resultado por item.")
+	public void batchLoansTest() {
+
+		Book free = bookRepository.save(Book.builder().title("Lote").author("Fulano").isbn("batch-free").build());
+		Book loaned = bookRepository.save(Book.builder().title("Lote").author("Fulano").isbn("batch-loaned").build());
+		Loan existing = service.save(newLoan(loaned));
+
+		List<LoanBatchItemDTO> created = service.saveAll(Arrays.asList(newLoan(free), newLoan(loaned), newLoan(free),
+				Loan.builder().customer("Fulano").build()));
+
+		assertThat(created.get(0).getId()).isNotNull();
+		assertThat(created.get(0).getError()).isNull();
+		assertThat(created).extracting(LoanBatchItemDTO::getError).containsExactly(null, "Book already loaned",
+				"Book already loaned", "Book not found for passed isbn");
+		assertThat(openLoans(free)).isEqualTo(1);
+
+		List<LoanBatchItemDTO> returned = service.returnAll(Arrays.asList(created.get(0).getId(), existing.getId(),
+				existing.getId(), -1l));
+
+		assertThat(returned).extracting(LoanBatchItemDTO::getError).containsExactly(null, null,
+				"Loan already returned", "Loan not found");
+		assertThat(openLoans(free)).isZero();
+		assertThat(openLoans(loaned)).isZero();
+		assertThat(service.save(newLoan(free)).getId()).isNotNull();
+	}
+
+	@Test
+	@DisplayName("Lotes concorrentes com livros em comum não devem gerar empréstimo duplo.")
+	public void concurrentBatchLoansTest() throws Exception {
+
+		List<Book> books = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			books.add(bookRepository.save(Book.builder().title("Lote").author("Fulano").isbn("batch-race-" + i).build()));
+		}
+
+		List<Callable<Integer>> attempts = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			List<Loan> loans = new ArrayList<>();
+			for (int i = 0; i < books.size(); i++) {
+				loans.add(newLoan(books.get((i + t) % books.size())));
+			}
+			attempts.add(() -> {
+				int ok = 0;
+				for (LoanBatchItemDTO item : service.saveAll(loans)) {
+					ok += item.getError() == null ? 1 : 0;
+				}
+				return ok;
+			});
+		}
+
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (Callable<Integer> attempt : attempts) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				return attempt.call();
+			}));
+		}
+		start.countDown();
+
+		int created = 0;
+		for (Future<Integer> future : futures) {
+			created += future.get(30, TimeUnit.SECONDS);
+		}
+		assertThat(created).isEqualTo(books.size());
+		for (Book book : books) {
+			assertThat(openLoans(book)).isEqualTo(1);
+		}
+	}
+
+	@Test
+	@DisplayName("Quando outra instância ganha a corrida no banco, o lote deve seguir item a item com entidades novas.")
+	public void batchLoansLosingRaceToAnotherInstanceTest() throws Exception {
+
+		Book free = bookRepository.save(Book.builder().title("Lote").author("Fulano").isbn("batch-lost-free").build());
+		Book taken = bookRepository.save(Book.builder().title("Lote").author("Fulano").isbn("batch-lost-taken").build());
+
+		/* outra instância grava um empréstimo aberto entre a conferência e o batch */
+		LoanRepository repository = Mockito.mock(LoanRepository.class, AdditionalAnswers.delegatesTo(loanRepository));
+		Mockito.doAnswer(invocation -> {
+			List<Long> open = loanRepository.findOpenBookIds(invocation.<Collection<Long>>getArgument(0));
+			executor.submit(() -> jdbcTemplate.update("insert into loan (customer, id_book, loan_date, returned, "
+					+ "status, open_book_id, version) values ('Outra instância', ?, current_date, false, 'OPEN', ?, 0)",
+					taken.getId(), taken.getId())).get(30, TimeUnit.SECONDS);
+			return open;
+		}).when(repository).findOpenBookIds(Mockito.any());
+		LoanService node = new LoanServiceImpl(repository, outbox, transactions, new SearchCounts(60_000, 1_000), 3);
+
+		List<Loan> loans = Arrays.asList(newLoan(free), newLoan(taken));
+		List<LoanBatchItemDTO> created = node.saveAll(loans);
+
+		assertThat(created).extracting(LoanBatchItemDTO::getError).containsExactly(null, "Book already loaned");
+		assertThat(loans.get(0).getId()).isNotNull().isEqualTo(created.get(0).getId());
+		assertThat(loanRepository.findById(loans.get(0).getId())).isPresent();
+		assertThat(openLoans(free)).isEqualTo(1);
+		assertThat(openLoans(taken)).isEqualTo(1);
+	}
+
+	private int race(List<Callable<Loan>> attempts) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Loan>> futures = new ArrayList<>();
+		for (Callable<Loan> attempt : attempts) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				return attempt.call();
+			}));
+		}
+		start.countDown();
+
+		int created = 0;
+		for (Future<Loan> future : futures) {
+			try {
+				future.get(30, TimeUnit.SECONDS);
+				created++;
+			} catch (java.util.concurrent.ExecutionException e) {
+				assertThat(e.getCause()).isInstanceOf(BusinessException.class).hasMessage("Book already loaned");
+			}
+		}
+		return created;
+	}
+
+	private Integer openLoans(Book book) {
+		return jdbcTemplate.queryForObject(
+				"select count(*) from loan where id_book = ? and (returned is null or returned = false)", Integer.class,
+				book.getId());
+	}
+
+	private static Loan newLoan(Book book) {
+		return Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+	}
+}
@@ -6,28 +6,37 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionOperations;
 
 import com.dagurasu.libraryapi.api.dto.LoanFilterDTO;
 import com.dagurasu.libraryapi.api.model.entity.Book;
 import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
 import com.dagurasu.libraryapi.api.model.repository.LoanRepository;
+import com.dagurasu.libraryapi.api.service.count.SearchCounts;
 import com.dagurasu.libraryapi.api.service.imp.LoanServiceImpl;
+import com.dagurasu.libraryapi.api.service.outbox.NotificationOutbox;
 import com.dagurasu.libraryapi.exception.BusinessException;
 
 @ActiveProfiles("test")
@@ -38,10 +47,14 @@ public class LoanServiceTest {
 
 	@MockBean
 	LoanRepository repository;
+
+	@MockBean
+	NotificationOutbox outbox;
 	
 	@BeforeEach
 	public void init() {
-		this.service = new LoanServiceImpl(repository);
+		this.service = new LoanServiceImpl(repository, outbox, TransactionOperations.withoutTransaction(),
+				new SearchCounts(60_000, 1_000), 3);
 	}
 
 	@Test
@@ -76,6 +89,8 @@ public class LoanServiceTest {
 		assertThat(loan.getBook()).isEqualTo(savedLoan.getBook());
 		assertThat(loan.getCustomer()).isEqualTo(savedLoan.getCustomer());
 		assertThat(loan.getLoanDate()).isEqualTo(savedLoan.getLoanDate());
+		assertThat(savingLoan.getDueDate()).isEqualTo(LocalDate.now().plusDays(3));
+		verify(outbox).loanCreated(savedLoan);
 		
 	}
 	
@@ -105,6 +120,31 @@ public class LoanServiceTest {
 		
 	}
 
+	@Test
+	@DisplayName("Só as restrições de empréstimo aberto e de livro existente devem virar erro de negócio.")
+	public void saveLoanIntegrityViolationTest() {
+
+		Book book = Book.builder().id(1l).build();
+		Loan savingLoan = Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build();
+
+		when(repository.save(savingLoan))
+			.thenThrow(violation("PUBLIC.UK_LOAN_OPEN_BOOK_ID_INDEX_2 ON PUBLIC.LOAN(OPEN_BOOK_ID)"));
+		assertThat(catchThrowable(() -> service.save(savingLoan)))
+			.isInstanceOf(BusinessException.class)
+			.hasMessage("Book already loaned");
+
+		Mockito.doThrow(violation("FK_LOAN_BOOK: PUBLIC.LOAN FOREIGN KEY(ID_BOOK) REFERENCES PUBLIC.BOOK(ID)"))
+			.when(repository).save(savingLoan);
+		assertThat(catchThrowable(() -> service.save(savingLoan)))
+			.isInstanceOf(BusinessException.class)
+			.hasMessage("Book not found for passed isbn");
+
+		Mockito.doThrow(violation("PUBLIC.UK_OUTBOX_MESSAGE_DEDUP_KEY_INDEX_8 ON PUBLIC.OUTBOX_MESSAGE(DEDUP_KEY)"))
+			.when(repository).save(savingLoan);
+		assertThat(catchThrowable(() -> service.save(savingLoan)))
+			.isInstanceOf(DataIntegrityViolationException.class);
+	}
+
 	@Test
 	@DisplayName("Deve obter as infromações de um empréstimo pelo id.")
 	public void getLoanDetailsTest() {
@@ -143,6 +183,18 @@ public class LoanServiceTest {
 		verify(repository).save(loan);
 		
 	}
+
+	@Test
+	@DisplayName("Devolver de novo um empréstimo já devolvido não deve fazer nada.")
+	public void returnAlreadyReturnedLoanTest() {
+
+		when(repository.markReturned(Collections.singleton(1l))).thenReturn(0);
+		when(repository.existsById(1l)).thenReturn(true);
+
+		assertThat(service.returnLoan(1l, true)).isTrue();
+		assertThat(service.returnLoan(2l, true)).isFalse();
+		verify(outbox, never()).loansReturned(Mockito.anyList());
+	}
 	
 	@Test
 	@DisplayName("Deve filtrar empréstimos pelas propriedades.")
@@ -150,20 +202,18 @@ public class LoanServiceTest {
 
 		LoanFilterDTO loanFilterDTO = LoanFilterDTO.builder().customer("Fulano").isbn("321").build();
 				
-		Loan loan = createLoan();
-
 		PageRequest pageRequest = PageRequest.of(0, 10);
 
-		List<Loan> lista = Arrays.asList(loan);
-		Page<Loan> page = new PageImpl<Loan>(lista, pageRequest, lista.size());
-		when(repository.findByBookIsbnOrCustomer(
+		List<LoanView> lista = Arrays.asList(createLoanView());
+		Page<LoanView> page = new PageImpl<LoanView>(lista, pageRequest, lista.size());
+		when(repository.findWithArchiveByBookIsbnOrCustomer(
 				Mockito.anyString(), 
 				Mockito.anyString(), 
 				Mockito.any(PageRequest.class))
 		)
 				.thenReturn(page);
 
-		Page<Loan> result = service.find(loanFilterDTO, pageRequest);
+		Page<LoanView> result = service.find(loanFilterDTO, pageRequest);
 
 		assertThat(result.getTotalElements()).isEqualTo(1);
 		assertThat(result.getContent()).isEqualTo(lista);
@@ -172,6 +222,34 @@ public class LoanServiceTest {
 
 	}
 	
+	@Test
+	@DisplayName("Deve filtrar empréstimos com total aproximado, sem contar quando a página é a última.")
+	public void findLoanApproximateTest() {
+
+		LoanFilterDTO filter = LoanFilterDTO.builder().customer("Fulano").isbn("321").build();
+		List<LoanView> lista = Arrays.asList(createLoanView());
+
+		when(repository.findSliceWithArchiveByBookIsbnOrCustomer("321", "Fulano", PageRequest.of(0, 10)))
+				.thenReturn(new SliceImpl<LoanView>(lista, PageRequest.of(0, 10), false));
+		Page<LoanView> single = service.findApproximate(filter, PageRequest.of(0, 10));
+
+		assertThat(single.getTotalElements()).isEqualTo(1);
+		verify(repository, never()).countWithArchiveByBookIsbnOrCustomer(Mockito.any(), Mockito.any());
+
+		LoanFilterDTO other = LoanFilterDTO.builder().customer("Ciclano").build();
+		when(repository.findSliceWithArchiveByBookIsbnOrCustomer(null, "Ciclano", PageRequest.of(0, 1)))
+				.thenReturn(new SliceImpl<LoanView>(lista, PageRequest.of(0, 1), true));
+		when(repository.countWithArchiveByBookIsbnOrCustomer(null, "Ciclano")).thenReturn(42l);
+
+		assertThat(service.findApproximate(other, PageRequest.of(0, 1)).getTotalElements()).isEqualTo(42);
+		assertThat(service.findApproximate(other, PageRequest.of(0, 1)).getTotalElements()).isEqualTo(42);
+		verify(repository).countWithArchiveByBookIsbnOrCustomer(null, "Ciclano");
+	}
+
+	public static LoanView createLoanView() {
+		return new LoanView(1l, "Fulano", "fulano@email.com", LocalDate.now(), null, 1l, "Título", "Autor", "321");
+	}
+
 	public static Loan createLoan() {
 		Book book = Book.builder().id(1l).build();
 		String customer = "Fulano";
@@ -184,4 +262,9 @@ public class LoanServiceTest {
 		
 		 
 	}
+
+	private static DataIntegrityViolationException violation(String constraint) {
+		return new DataIntegrityViolationException("could not execute statement",
+				new ConstraintViolationException("could not execute statement", new SQLException(), constraint));
+	}
 }
@@ -0,0 +1,186 @@
+package com.dagurasu.libraryapi.api.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.dagurasu.libraryapi.api.model.entity.JobWatermark;
+import com.dagurasu.libraryapi.api.model.projection.LateLoanView;
+import com.dagurasu.libraryapi.api.model.repository.JobWatermarkRepository;
+import com.dagurasu.libraryapi.api.service.lease.JobLeases;
+import com.dagurasu.libraryapi.api.service.outbox.NotificationOutbox;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+public class ScheduleServiceTest {
+
+	ScheduleService service;
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@MockBean
+	LoanService loanService;
+
+	@MockBean
+	NotificationOutbox outbox;
+
+	@MockBean
+	JobWatermarkRepository watermarks;
+
+	@MockBean
+	JobLeases leases;
+
+	@BeforeEach
+	public void init() {
+		service = new ScheduleService(loanService, outbox, watermarks, leases, TransactionOperations.withoutTransaction(),
+				meterRegistry);
+		ReflectionTestUtils.setField(service, "mensagem", "Atrasado");
+		ReflectionTestUtils.setField(service, "chunkSize", 2);
+		ReflectionTestUtils.setField(service, "reminderDays", 7);
+		ReflectionTestUtils.setField(service, "partitions", 1);
+		ReflectionTestUtils.setField(service, "leaseTtlMs", 60000l);
+		when(leases.tryAcquire(eq(ScheduleService.LATE_LOANS_JOB), any(Duration.class))).thenReturn(true);
+		when(loanService.getNewlyLateLoansAfter(any(LocalDate.class), any(LocalDate.class), any(LoanPartition.class),
+				any(Long.class), anyInt())).thenReturn(Collections.emptyList());
+		when(loanService.getLateLoansToRemindAfter(any(LocalDate.class), any(LoanPartition.class), any(Long.class),
+				anyInt())).thenReturn(Collections.emptyList());
+	}
+
+	@Test
+	@DisplayName("Deve enfileirar no outbox os e-mails dos empréstimos que venceram desde a última execução, em blocos.")
+	public void sendMailToLateLoansInChunksTest() {
+
+		LocalDate since = LocalDate.now().minusDays(1);
+		when(watermarks.findById(ScheduleService.LATE_LOANS_JOB))
+				.thenReturn(Optional.of(JobWatermark.builder().watermark(since).build()));
+
+		List<LateLoanView> first = Arrays.asList(view(1l, "a@email.com"), view(2l, "b@email.com"));
+		List<LateLoanView> second = Arrays.asList(view(5l, "c@email.com"), view(6l, null));
+		when(loanService.getNewlyLateLoansAfter(eq(since), any(LocalDate.class), eq(LoanPartition.ALL), eq(0l), eq(2)))
+				.thenReturn(first);
+		when(loanService.getNewlyLateLoansAfter(eq(since), any(LocalDate.class), eq(LoanPartition.ALL), eq(2l), eq(2)))
+				.thenReturn(second);
+		when(outbox.lateLoans(eq(first), any(LocalDate.class), eq("Atrasado"))).thenReturn(2);
+		when(outbox.lateLoans(eq(second), any(LocalDate.class), eq("Atrasado"))).thenReturn(1);
+
+		service.sendMailToLateLoans();
+
+		verify(outbox).lateLoans(eq(first), any(LocalDate.class), eq("Atrasado"));
+		verify(outbox).lateLoans(eq(second), any(LocalDate.class), eq("Atrasado"));
+		verify(loanService).markLateNotified(Arrays.asList(1l, 2l), LocalDate.now());
+		verify(loanService).markLateNotified(Arrays.asList(5l, 6l), LocalDate.now());
+		verify(loanService, times(3)).getNewlyLateLoansAfter(eq(since), any(LocalDate.class), eq(LoanPartition.ALL),
+				any(Long.class), anyInt());
+		verify(leases).release(ScheduleService.LATE_LOANS_JOB);
+
+		assertThat(meterRegistry.counter("library.late.loans.processed").count()).isEqualTo(4);
+		assertThat(meterRegistry.counter("library.late.loans.emails").count()).isEqualTo(3);
+		assertThat(meterRegistry.timer("library.late.loans.chunk").count()).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Deve reavisar os empréstimos avisados há mais dias que o intervalo de lembrete.")
+	public void remindLateLoansTest() {
+
+		List<LateLoanView> reminders = Arrays.asList(view(3l, "a@email.com"));
+		when(loanService.getLateLoansToRemindAfter(LocalDate.now().minusDays(7), LoanPartition.ALL, 0l, 2))
+				.thenReturn(reminders);
+		when(outbox.lateLoans(eq(reminders), any(LocalDate.class), eq("Atrasado"))).thenReturn(1);
+
+		service.sendMailToLateLoans();
+
+		verify(loanService).getNewlyLateLoansAfter(eq(ScheduleService.INITIAL_WATERMARK), any(LocalDate.class),
+				eq(LoanPartition.ALL), eq(0l), eq(2));
+		verify(loanService).markLateNotified(Arrays.asList(3l), LocalDate.now());
+		assertThat(meterRegistry.counter("library.late.loans.emails").count()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Deve avançar a marca d'água ao fim da execução, mesmo sem atrasados.")
+	public void noLateLoansTest() {
+
+		service.sendMailToLateLoans();
+
+		ArgumentCaptor<JobWatermark> watermark = ArgumentCaptor.forClass(JobWatermark.class);
+		verify(watermarks).save(watermark.capture());
+		assertThat(watermark.getValue().getName()).isEqualTo(ScheduleService.LATE_LOANS_JOB);
+		assertThat(watermark.getValue().getWatermark()).isEqualTo(LocalDate.now());
+		verify(loanService, never()).markLateNotified(any(), any());
+		assertThat(meterRegistry.counter("library.late.loans.emails").count()).isZero();
+		assertThat(meterRegistry.timer("library.late.loans.chunk").count()).isZero();
+	}
+
+	@Test
+	@DisplayName("Não deve processar quando outra réplica detiver o lease do job.")
+	public void leaseHeldByAnotherInstanceTest() {
+
+		when(leases.tryAcquire(eq(ScheduleService.LATE_LOANS_JOB), any(Duration.class))).thenReturn(false);
+
+		service.sendMailToLateLoans();
+
+		verify(loanService, never()).getNewlyLateLoansAfter(any(), any(), any(), any(), anyInt());
+		verify(watermarks, never()).save(any());
+		verify(leases, never()).release(anyString());
+	}
+
+	@Test
+	@DisplayName("Deve dividir o job em partições com leases próprios e pular as já processadas no dia.")
+	public void partitionedJobTest() {
+
+		ReflectionTestUtils.setField(service, "partitions", 3);
+		when(leases.tryAcquire(anyString(), any(Duration.class))).thenReturn(true);
+		when(leases.tryAcquire(eq(ScheduleService.LATE_LOANS_JOB + ":1"), any(Duration.class))).thenReturn(false);
+		when(watermarks.findById(ScheduleService.LATE_LOANS_JOB + ":2"))
+				.thenReturn(Optional.of(JobWatermark.builder().watermark(LocalDate.now()).build()));
+
+		service.sendMailToLateLoans();
+
+		verify(loanService).getNewlyLateLoansAfter(any(LocalDate.class), any(LocalDate.class),
+				eq(new LoanPartition(0, 3)), eq(0l), eq(2));
+		verify(loanService, times(1)).getNewlyLateLoansAfter(any(), any(), any(), any(), anyInt());
+		verify(leases).release(ScheduleService.LATE_LOANS_JOB + ":0");
+		verify(leases).release(ScheduleService.LATE_LOANS_JOB + ":2");
+		verify(leases, never()).release(ScheduleService.LATE_LOANS_JOB + ":1");
+	}
+
+	private static LateLoanView view(Long id, String email) {
+		return new LateLoanView() {
+
+			@Override
+			public Long getId() {
+				return id;
+			}
+
+			@Override
+			public String getCustomerEmail() {
+				return email;
+			}
+		};
+	}
+}
@@ -0,0 +1,80 @@
+package com.dagurasu.libraryapi.api.service.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.dagurasu.libraryapi.api.model.repository.LoanRepository;
+import com.dagurasu.libraryapi.api.service.lease.JobLeases;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ActiveProfiles("test")
+@ExtendWith(SpringExtension.class)
+public class LoanArchiverTest {
+
+	LoanArchiver archiver;
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@MockBean
+	LoanRepository repository;
+
+	@MockBean
+	JobLeases leases;
+
+	@BeforeEach
+	public void init() {
+		archiver = new LoanArchiver(repository, leases, TransactionOperations.withoutTransaction(), meterRegistry,
+				365, 2, 60000);
+	}
+
+	@Test
+	@DisplayName("Deve arquivar em lotes até encontrar um lote incompleto.")
+	public void archiveInBatchesTest() {
+		LocalDate today = LocalDate.of(2026, 10, 17);
+		when(leases.tryAcquire(eq(LoanArchiver.ARCHIVE_LEASE), any(Duration.class))).thenReturn(true);
+		when(repository.findArchivableIds(eq(today.minusDays(365)), any(Pageable.class)))
+				.thenReturn(Arrays.asList(1l, 2l), Collections.singletonList(3l));
+		when(repository.archive(anyCollection(), any(LocalDateTime.class))).thenReturn(2, 1);
+
+		long archived = archiver.archive(today);
+
+		assertThat(archived).isEqualTo(3);
+		verify(repository, times(2)).archive(anyCollection(), any(LocalDateTime.class));
+		verify(leases).release(LoanArchiver.ARCHIVE_LEASE);
+		assertThat(meterRegistry.counter("library.loans.archived").count()).isEqualTo(3);
+	}
+
+	@Test
+	@DisplayName("Não deve arquivar quando outra réplica detém o lease.")
+	public void leaseHeldByAnotherInstanceTest() {
+		when(leases.tryAcquire(eq(LoanArchiver.ARCHIVE_LEASE), any(Duration.class))).thenReturn(false);
+
+		assertThat(archiver.archive(LocalDate.now())).isZero();
+
+		verify(repository, never()).findArchivableIds(any(LocalDate.class), any(Pageable.class));
+		verify(leases, never()).release(LoanArchiver.ARCHIVE_LEASE);
+	}
+}
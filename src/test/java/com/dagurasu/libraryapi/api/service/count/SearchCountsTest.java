@@ -0,0 +1,55 @@
+package com.dagurasu.libraryapi.api.service.count;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+public class SearchCountsTest {
+
+	SearchCounts counts = new SearchCounts(60_000, 100);
+
+	@Test
+	@DisplayName("O total em cache deve ser corrigido pelo que a página mostra, e a última página deve atualizá-lo.")
+	public void pageAdjustsCachedTotalTest() {
+		AtomicInteger queries = new AtomicInteger();
+		String key = SearchCounts.key("books", "mestre", null, null);
+
+		Page<String> first = counts.page(key, new SliceImpl<>(Arrays.asList("a", "b"), PageRequest.of(0, 2), true),
+				() -> queries.incrementAndGet() * 3);
+		assertThat(first.getTotalElements()).isEqualTo(3);
+
+		Page<String> beyondStaleTotal = counts.page(key,
+				new SliceImpl<>(Arrays.asList("e", "f"), PageRequest.of(2, 2), true), () -> queries.incrementAndGet());
+		assertThat(beyondStaleTotal.getTotalElements()).isEqualTo(7);
+
+		Page<String> last = counts.page(key, new SliceImpl<>(Arrays.asList("g"), PageRequest.of(3, 2), false),
+				() -> queries.incrementAndGet());
+		assertThat(last.getTotalElements()).isEqualTo(7);
+
+		Page<String> again = counts.page(key, new SliceImpl<>(Arrays.asList("a", "b"), PageRequest.of(0, 2), true),
+				() -> queries.incrementAndGet());
+		assertThat(again.getTotalElements()).isEqualTo(7);
+		assertThat(queries).hasValue(1);
+	}
+
+	@Test
+	@DisplayName("Uma página vazia além do fim não deve passar o total do offset.")
+	public void emptyPageBeyondEndTest() {
+		String key = SearchCounts.key("loans", null, "Fulano");
+
+		Page<String> page = counts.page(key, new SliceImpl<>(Collections.<String>emptyList(), PageRequest.of(5, 10),
+				false), () -> 1_000);
+
+		assertThat(page.getContent()).isEmpty();
+		assertThat(page.getTotalElements()).isEqualTo(50);
+		assertThat(SearchCounts.key("loans", null, "Fulano")).isEqualTo(SearchCounts.key("loans", "", "Fulano"));
+	}
+}
@@ -0,0 +1,103 @@
+package com.dagurasu.libraryapi.api.service.dataset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:dataset-test;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("test")
+public class DatasetGeneratorTest {
+
+	static final DatasetSpec SPEC = DatasetSpec.builder().books(1_000).loans(20_000).customers(500).openRatio(0.02)
+			.overdueRatio(0.5).historyDays(365).batchSize(1_000).build();
+
+	@Autowired
+	DatasetGenerator generator;
+
+	@Autowired
+	JdbcTemplate jdbc;
+
+	@BeforeEach
+	public void clean() {
+		jdbc.update("delete from loan");
+		jdbc.update("delete from book");
+	}
+
+	@Test
+	@DisplayName("Deve gerar o volume pedido, com os empréstimos concentrados nos livros e clientes mais populares.")
+	public void volumeAndSkewTest() {
+		DatasetGenerator.Result result = generator.generate(SPEC);
+
+		assertThat(count("select count(*) from book")).isEqualTo(1_000);
+		assertThat(count("select count(*) from loan")).isEqualTo(20_000);
+		assertThat(result.getOpenLoans()).isEqualTo(400);
+		assertThat(count("select count(*) from loan where status = 'OPEN'")).isEqualTo(400);
+
+		long topBooks = count("select count(*) from loan where id_book < ?", result.getFirstBookId() + 10);
+		long topCustomers = count("select count(*) from loan where customer in "
+				+ "('customer-1', 'customer-2', 'customer-3', 'customer-4', 'customer-5')");
+		assertThat(topBooks).as("loans of the top 1%% books").isGreaterThan(20_000 / 4);
+		assertThat(topCustomers).as("loans of the top 1%% customers").isGreaterThan(20_000 / 10);
+	}
+
+	@Test
+	@DisplayName("Deve gerar o histórico em ordem de data e parte dos abertos atrasada, com cauda longa.")
+	public void historyAndOverdueTest() {
+		DatasetGenerator.Result result = generator.generate(SPEC);
+		LocalDate today = LocalDate.now();
+
+		assertThat(jdbc.queryForObject("select min(loan_date) from loan", Date.class).toLocalDate())
+				.isEqualTo(today.minusDays(365));
+		assertThat(count("select count(*) from loan a join loan b on b.id = a.id + 1 "
+				+ "where a.status = 'RETURNED' and b.status = 'RETURNED' and b.loan_date < a.loan_date")).isZero();
+
+		assertThat(result.getOverdueLoans()).isBetween(160l, 240l);
+		assertThat(count("select count(*) from loan where status = 'OPEN' and due_date < ?",
+				Date.valueOf(today.minusDays(30)))).isPositive();
+		assertThat(count("select count(*) from loan where status = 'OPEN' and due_date >= ?", Date.valueOf(today)))
+				.isEqualTo(400 - result.getOverdueLoans());
+	}
+
+	@Test
+	@DisplayName("A mesma semente deve gerar exatamente a mesma massa.")
+	public void deterministicTest() {
+		List<String> first = rows(generator.generate(SPEC));
+		clean();
+		List<String> second = rows(generator.generate(SPEC));
+		clean();
+		List<String> other = rows(generator.generate(SPEC.toBuilder().seed(7).build()));
+
+		assertThat(second).isEqualTo(first);
+		assertThat(other).isNotEqualTo(first);
+	}
+
+	@Test
+	@DisplayName("Não deve gerar sobre um catálogo já populado.")
+	public void nonEmptyCatalogTest() {
+		jdbc.update("insert into book (title, author, isbn, version) values ('Livro', 'Autor', '123', 0)");
+
+		assertThatThrownBy(() -> generator.generate(SPEC)).isInstanceOf(IllegalStateException.class);
+		assertThat(count("select count(*) from loan")).isZero();
+	}
+
+	private List<String> rows(DatasetGenerator.Result result) {
+		return jdbc.queryForList("select concat(b.title, '|', b.author, '|', b.isbn, '|', l.id_book - ?, '|', "
+				+ "l.customer, '|', l.loan_date, '|', l.status) from loan l join book b on b.id = l.id_book order by l.id",
+				String.class, result.getFirstBookId());
+	}
+
+	private long count(String sql, Object... args) {
+		return jdbc.queryForObject(sql, Long.class, args);
+	}
+}
@@ -0,0 +1,151 @@
+package com.dagurasu.libraryapi.api.service.lease;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.dagurasu.libraryapi.LibraryApiApplication;
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.entity.JobWatermark;
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.repository.BookRepository;
+import com.dagurasu.libraryapi.api.model.repository.JobWatermarkRepository;
+import com.dagurasu.libraryapi.api.model.repository.LoanRepository;
+import com.dagurasu.libraryapi.api.model.repository.OutboxRepository;
+import com.dagurasu.libraryapi.api.service.ScheduleService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Duas instâncias da aplicação sobre o mesmo banco H2, como duas réplicas:
+ * os leases precisam eleger um único dono, expirar e permitir que a outra
+ * assuma, e o job particionado precisa ser dividido sem trabalho repetido.
+ */
+public class JobLeaseClusterTest {
+
+	static final String URL = "jdbc:h2:mem:cluster-test;DB_CLOSE_DELAY=-1";
+	static final int PARTITIONS = 4;
+	static final int LATE_LOANS = 40;
+
+	static ConfigurableApplicationContext nodeA;
+	static ConfigurableApplicationContext nodeB;
+
+	@BeforeAll
+	public static void start() {
+		nodeA = start("node-a");
+		nodeB = start("node-b");
+		nodeA.getBean(JobLeases.class).tryAcquire("warm-up", Duration.ZERO);
+		nodeB.getBean(JobLeases.class).tryAcquire("warm-up", Duration.ZERO);
+	}
+
+	@AfterAll
+	public static void stop() {
+		nodeB.close();
+		nodeA.close();
+	}
+
+	@Test
+	@DisplayName("Só uma réplica deve deter o lease, e outra deve assumir após a expiração.")
+	public void leaseExpiryAndTakeoverTest() throws Exception {
+		JobLeases a = nodeA.getBean(JobLeases.class);
+		JobLeases b = nodeB.getBean(JobLeases.class);
+		Duration ttl = Duration.ofSeconds(1);
+
+		assertThat(a.tryAcquire("cluster-test", ttl)).isTrue();
+		assertThat(b.tryAcquire("cluster-test", ttl)).isFalse();
+		assertThat(a.tryAcquire("cluster-test", ttl)).isTrue();
+
+		Thread.sleep(1200);
+
+		assertThat(b.tryAcquire("cluster-test", ttl)).isTrue();
+		assertThat(a.tryAcquire("cluster-test", ttl)).isFalse();
+
+		b.release("cluster-test");
+		assertThat(a.tryAcquire("cluster-test", ttl)).isTrue();
+		a.release("cluster-test");
+	}
+
+	@Test
+	@DisplayName("Réplicas disputando o lease ao mesmo tempo devem eleger um único dono.")
+	public void concurrentAcquireTest() {
+		JobLeases a = nodeA.getBean(JobLeases.class);
+		JobLeases b = nodeB.getBean(JobLeases.class);
+		Duration ttl = Duration.ofMinutes(1);
+
+		for (int round = 0; round < 10; round++) {
+			String name = "race-" + round;
+			CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> a.tryAcquire(name, ttl));
+			CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> b.tryAcquire(name, ttl));
+
+			assertThat(first.join() ^ second.join()).as("round %d", round).isTrue();
+		}
+	}
+
+	@Test
+	@DisplayName("O job particionado deve ser dividido entre as réplicas sem avisar o mesmo empréstimo duas vezes.")
+	public void partitionedLateLoansAcrossNodesTest() {
+		seedLateLoans();
+
+		CompletableFuture<Void> runA = CompletableFuture
+				.runAsync(() -> nodeA.getBean(ScheduleService.class).sendMailToLateLoans());
+		CompletableFuture<Void> runB = CompletableFuture
+				.runAsync(() -> nodeB.getBean(ScheduleService.class).sendMailToLateLoans());
+		CompletableFuture.allOf(runA, runB).join();
+
+		assertThat(processed(nodeA) + processed(nodeB)).isEqualTo(LATE_LOANS);
+		assertThat(nodeA.getBean(OutboxRepository.class).count()).isEqualTo(LATE_LOANS);
+
+		JobWatermarkRepository watermarks = nodeA.getBean(JobWatermarkRepository.class);
+		for (int i = 0; i < PARTITIONS; i++) {
+			assertThat(watermarks.findById("late-loans:" + i)).map(JobWatermark::getWatermark)
+					.hasValue(LocalDate.now());
+		}
+
+		nodeB.getBean(ScheduleService.class).sendMailToLateLoans();
+		assertThat(processed(nodeA) + processed(nodeB)).isEqualTo(LATE_LOANS);
+	}
+
+	private static void seedLateLoans() {
+		BookRepository books = nodeA.getBean(BookRepository.class);
+		LoanRepository loans = nodeA.getBean(LoanRepository.class);
+		LocalDate loanDate = LocalDate.now().minusDays(10);
+		List<Loan> batch = new ArrayList<>(LATE_LOANS);
+		for (int i = 0; i < LATE_LOANS; i++) {
+			Book book = books.save(Book.builder().title("Cluster " + i).author("Fulano").isbn("cluster-" + i).build());
+			batch.add(Loan.builder().book(book).customer("Cliente " + i).customerEmail("cliente" + i + "@email.com")
+					.loanDate(loanDate).dueDate(loanDate.plusDays(3)).build());
+		}
+		loans.saveAll(batch);
+	}
+
+	private static double processed(ConfigurableApplicationContext node) {
+		return node.getBean(MeterRegistry.class).counter("library.late.loans.processed").count();
+	}
+
+	private static ConfigurableApplicationContext start(String instanceId) {
+		return new SpringApplicationBuilder(LibraryApiApplication.class)
+				.web(WebApplicationType.NONE)
+				.profiles("test")
+				.run("--spring.datasource.url=" + URL,
+						"--spring.main.banner-mode=off",
+						"--spring.boot.admin.client.enabled=false",
+						"--spring.devtools.restart.enabled=false",
+						"--application.jobs.instance-id=" + instanceId,
+						"--application.mail.late.loans.partitions=" + PARTITIONS,
+						"--application.mail.late.loans.chunk-size=5",
+						"--application.outbox.relay.delay-ms=3600000",
+						"--logging.file.name=");
+	}
+}
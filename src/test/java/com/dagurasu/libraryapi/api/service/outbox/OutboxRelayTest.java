@@ -0,0 +1,163 @@
+package com.dagurasu.libraryapi.api.service.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionOperations;
+
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.entity.OutboxMessage;
+import com.dagurasu.libraryapi.api.model.entity.OutboxStatus;
+import com.dagurasu.libraryapi.api.model.projection.LateLoanView;
+import com.dagurasu.libraryapi.api.model.repository.BookRepository;
+import com.dagurasu.libraryapi.api.model.repository.OutboxRepository;
+import com.dagurasu.libraryapi.api.service.EmailDispatchResult;
+import com.dagurasu.libraryapi.api.service.EmailService;
+import com.dagurasu.libraryapi.api.service.LoanService;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "application.outbox.relay.delay-ms=3600000")
+public class OutboxRelayTest {
+
+	@Autowired
+	OutboxRelay relay;
+
+	@Autowired
+	NotificationOutbox outbox;
+
+	@Autowired
+	OutboxRepository repository;
+
+	@Autowired
+	LoanService loanService;
+
+	@Autowired
+	BookRepository bookRepository;
+
+	@Autowired
+	TransactionOperations transactions;
+
+	@MockBean
+	EmailService emailService;
+
+	@BeforeEach
+	public void clean() {
+		repository.deleteAll();
+	}
+
+	@Test
+	@DisplayName("Deve gravar a notificação no outbox junto com o empréstimo.")
+	public void loanCreatedWritesOutboxTest() {
+		Book book = bookRepository.save(Book.builder().title("Outbox").author("Fulano").isbn("outbox-1").build());
+
+		Loan loan = loanService.save(Loan.builder().book(book).customer("Fulano").customerEmail("fulano@email.com")
+				.loanDate(LocalDate.now()).build());
+		loan.setReturned(true);
+		loan = loanService.update(loan);
+		loanService.update(loan);
+
+		List<OutboxMessage> messages = repository.findAll();
+		assertThat(messages).extracting(OutboxMessage::getDedupKey)
+				.containsExactlyInAnyOrder("loan-created:" + loan.getId(),
+						"loan-returned:" + loan.getId() + ":" + loan.getVersion());
+		assertThat(messages).allMatch(m -> m.getStatus() == OutboxStatus.PENDING);
+	}
+
+	@Test
+	@DisplayName("Deve notificar de novo a devolução de um empréstimo reaberto.")
+	public void reopenedLoanReturnedAgainTest() {
+		Book book = bookRepository.save(Book.builder().title("Outbox").author("Fulano").isbn("outbox-2").build());
+		Loan loan = loanService.save(Loan.builder().book(book).customer("Fulano").customerEmail("fulano@email.com")
+				.loanDate(LocalDate.now()).build());
+
+		loanService.returnLoan(loan.getId(), true);
+		loanService.returnLoan(loan.getId(), false);
+		loanService.returnLoan(loan.getId(), true);
+
+		assertThat(repository.findAll()).extracting(OutboxMessage::getDedupKey)
+				.filteredOn(key -> key.startsWith("loan-returned:")).hasSize(2);
+	}
+
+	@Test
+	@DisplayName("Não deve duplicar notificações de atraso no mesmo dia.")
+	public void lateLoansDeduplicatedTest() {
+		LocalDate today = LocalDate.now();
+		List<LateLoanView> loans = Arrays.asList(view(1l, "a@email.com"), view(2l, null));
+
+		int first = transactions.execute(status -> outbox.lateLoans(loans, today, "Atrasado"));
+		int second = transactions.execute(status -> outbox.lateLoans(loans, today, "Atrasado"));
+
+		assertThat(first).isEqualTo(1);
+		assertThat(second).isZero();
+		assertThat(repository.count()).isEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Deve entregar as mensagens pendentes em lote e marcá-las como enviadas.")
+	public void relayDeliversInBatchesTest() {
+		LocalDate today = LocalDate.now();
+		transactions.execute(status -> outbox.lateLoans(
+				Arrays.asList(view(1l, "a@email.com"), view(2l, "b@email.com")), today, "Atrasado"));
+		when(emailService.sendEmails(anyString(), anyString(), anyList()))
+				.thenReturn(new EmailDispatchResult(2, 0, Collections.emptyList()));
+
+		relay.relay();
+		relay.relay();
+
+		verify(emailService, times(1)).sendEmails(NotificationOutbox.LATE_LOAN_SUBJECT, "Atrasado",
+				Arrays.asList("a@email.com", "b@email.com"));
+		assertThat(repository.countByStatus(OutboxStatus.SENT)).isEqualTo(2);
+	}
+
+	@Test
+	@DisplayName("Deve tentar novamente as mensagens com falha até o limite de tentativas.")
+	public void relayRetriesFailuresTest() {
+		transactions.execute(status -> outbox.lateLoans(Arrays.asList(view(1l, "a@email.com")), LocalDate.now(),
+				"Atrasado"));
+		when(emailService.sendEmails(anyString(), anyString(), anyList()))
+				.thenReturn(new EmailDispatchResult(0, 1, Arrays.asList("a@email.com")));
+
+		for (int i = 0; i < 6; i++) {
+			relay.relay();
+		}
+
+		verify(emailService, times(5)).sendEmails(anyString(), eq("Atrasado"), any(List.class));
+		OutboxMessage message = repository.findAll().get(0);
+		assertThat(message.getStatus()).isEqualTo(OutboxStatus.FAILED);
+		assertThat(message.getAttempts()).isEqualTo(5);
+	}
+
+	private static LateLoanView view(Long id, String email) {
+		return new LateLoanView() {
+
+			@Override
+			public Long getId() {
+				return id;
+			}
+
+			@Override
+			public String getCustomerEmail() {
+				return email;
+			}
+		};
+	}
+}
@@ -0,0 +1,71 @@
+package com.dagurasu.libraryapi.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.dagurasu.libraryapi.api.mapper.LoanMapper;
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
+import com.dagurasu.libraryapi.api.service.BookService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class OperationMetricsAspectTest {
+
+	@Autowired
+	BookService bookService;
+
+	@Autowired
+	LoanMapper loanMapper;
+
+	@Autowired
+	MeterRegistry meterRegistry;
+
+	@Test
+	@DisplayName("Deve medir as operações do serviço com percentis, separando sucesso e erro.")
+	public void serviceTimersTest() {
+		Book book = bookService.save(Book.builder().title("Métricas").author("Fulano").isbn("metrics-1").build());
+		bookService.getById(book.getId());
+		Throwable error = catchThrowable(() -> bookService.update(Book.builder().build()));
+
+		Timer success = timer("BookService.save", "success");
+		assertThat(success.count()).isGreaterThanOrEqualTo(1);
+		assertThat(success.takeSnapshot().percentileValues()).hasSize(3);
+
+		assertThat(error).isInstanceOf(IllegalArgumentException.class);
+		assertThat(meterRegistry.get(OperationMetricsAspect.METRIC).tag("operation", "BookService.update")
+				.tag("outcome", "error").tag("exception", "IllegalArgumentException").timer().count())
+						.isEqualTo(1);
+
+		assertThat(meterRegistry.get("spring.data.repository.invocations").tag("repository", "BookRepository")
+				.tag("method", "save").timer().count()).isGreaterThanOrEqualTo(1);
+	}
+
+	@Test
+	@DisplayName("Deve medir as conversões dos mappers.")
+	public void mapperTimersTest() {
+		loanMapper.viewsToDTOs(Collections.singletonList(new LoanView(1l, "Fulano", "fulano@email.com",
+				LocalDate.now(), false, 1l, "Título", "Autor", "321")));
+
+		Timer timer = meterRegistry.get(OperationMetricsAspect.METRIC).tag("layer", "mapper")
+				.tag("operation", "LoanMapper.viewsToDTOs").timer();
+		assertThat(timer.count()).isGreaterThanOrEqualTo(1);
+	}
+
+	private Timer timer(String operation, String outcome) {
+		return meterRegistry.get(OperationMetricsAspect.METRIC).tag("operation", operation).tag("outcome", outcome)
+				.timer();
+	}
+}
@@ -0,0 +1,37 @@
+package com.dagurasu.libraryapi.config.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.dagurasu.libraryapi.config.sql.SqlStatementCounter.Recording;
+
+/**
+ * Orçamento de comandos SQL para testes: executa a ação (em geral uma chamada
+ * do MockMvc) contando os comandos emitidos na thread do teste.
+ *
+ * <pre>
+ * SqlBudget.assertAtMost(2, () -&gt; mvc.perform(get("/api/loans?customer=Fulano")));
+ * </pre>
+ */
+public final class SqlBudget {
+
+	@FunctionalInterface
+	public interface Action {
+		void run() throws Exception;
+	}
+
+	private SqlBudget() {
+	}
+
+	public static Recording record(Action action) throws Exception {
+		try (Recording recording = SqlStatementCounter.start()) {
+			action.run();
+			return recording;
+		}
+	}
+
+	public static Recording assertAtMost(int maxStatements, Action action) throws Exception {
+		Recording recording = record(action);
+		assertThat(recording.getStatements()).as("SQL statements").isLessThanOrEqualTo(maxStatements);
+		return recording;
+	}
+}
@@ -1,8 +1,10 @@
 package com.dagurasu.libraryapi.model.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,6 +12,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
@@ -40,6 +46,60 @@ public class BookRepositoryTest {
 		assertThat(exists).isTrue();
 	}
 
+	@Test
+	@DisplayName("Deve atualizar somente as colunas informadas.")
+	public void patchTest() {
+
+		Book book = createNewBook("123");
+		entityManager.persist(book);
+
+		int updated = repository.patch(book.getId(), null, "Novo título", null);
+		entityManager.clear();
+
+		assertThat(updated).isEqualTo(1);
+		Book found = entityManager.find(Book.class, book.getId());
+		assertThat(found.getTitle()).isEqualTo("Novo título");
+		assertThat(found.getAuthor()).isEqualTo("Douglas");
+		assertThat(repository.patch(-1l, null, "Título", "Autor")).isZero();
+		assertThat(found.getVersion()).isEqualTo(book.getVersion() + 1);
+	}
+
+	@Test
+	@DisplayName("Deve rejeitar a gravação de uma cópia com versão desatualizada.")
+	public void staleVersionTest() {
+
+		Book book = createNewBook("123");
+		entityManager.persist(book);
+		entityManager.flush();
+		entityManager.clear();
+
+		Book stale = Book.builder().id(book.getId()).title("Cópia antiga").author("Fulano").isbn("123")
+				.version(book.getVersion()).build();
+		repository.patch(book.getId(), null, "Novo título", null);
+
+		assertThatThrownBy(() -> repository.saveAndFlush(stale))
+				.isInstanceOf(ObjectOptimisticLockingFailureException.class);
+	}
+
+	@Test
+	@DisplayName("Deve atualizar parcialmente só quando a versão informada for a atual.")
+	public void patchWithVersionTest() {
+
+		Book book = createNewBook("123");
+		entityManager.persist(book);
+		entityManager.flush();
+		Long version = book.getVersion();
+
+		assertThat(repository.patch(book.getId(), version + 1, "Título", null)).isZero();
+		assertThat(repository.patch(book.getId(), version, "Novo título", null)).isEqualTo(1);
+		assertThat(repository.patch(book.getId(), version, "Outro título", null)).isZero();
+		entityManager.clear();
+
+		Book found = entityManager.find(Book.class, book.getId());
+		assertThat(found.getTitle()).isEqualTo("Novo título");
+		assertThat(found.getVersion()).isEqualTo(version + 1);
+	}
+
 	public static Book createNewBook(String isbn) {
 		return Book.builder().title("O Mestre do Bug").author("Douglas").isbn(isbn).build();
 	}
@@ -93,4 +153,25 @@ public class BookRepositoryTest {
 		assertThat(deletedBook).isNull();
 
 	}
+
+	@Test
+	@DisplayName("Deve paginar livros por cursor a partir do último id.")
+	public void findByPatternsAfterTest() {
+
+		Book first = entityManager.persist(createNewBook("001"));
+		Book second = entityManager.persist(createNewBook("002"));
+		entityManager.persist(Book.builder().title("Outro").author("Fulano").isbn("003").build());
+
+		PageRequest pageRequest = PageRequest.of(0, 1, Sort.by("id"));
+		Slice<Book> page = repository.findByPatternsAfter(0l, "%mestre%", null, null, pageRequest);
+
+		assertThat(page.getContent()).containsExactly(first);
+		assertThat(page.hasNext()).isTrue();
+
+		page = repository.findByPatternsAfter(first.getId(), "%mestre%", null, null, pageRequest);
+
+		assertThat(page.getContent().stream().map(Book::getId).collect(Collectors.toList()))
+				.containsExactly(second.getId());
+		assertThat(page.hasNext()).isFalse();
+	}
 }
@@ -2,8 +2,12 @@ package com.dagurasu.libraryapi.model.repository;
 
 import static com.dagurasu.libraryapi.model.repository.BookRepositoryTest.createNewBook;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.jupiter.api.DisplayName;
@@ -12,19 +16,28 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import com.dagurasu.libraryapi.api.model.entity.Book;
 import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.entity.LoanArchive;
+import com.dagurasu.libraryapi.api.model.entity.LoanStatus;
+import com.dagurasu.libraryapi.api.model.projection.LateLoanView;
+import com.dagurasu.libraryapi.api.model.projection.LoanView;
 import com.dagurasu.libraryapi.api.model.repository.LoanRepository;
 
 
 @DataJpaTest
 @ActiveProfiles("test")
 @ExtendWith(SpringExtension.class)
+@Import(SqlRecorder.class)
 public class LoanRepositoryTest {
 
 	@Autowired
@@ -33,6 +46,9 @@ public class LoanRepositoryTest {
 	@Autowired
 	private LoanRepository repository;
 
+	@Autowired
+	private SqlRecorder recorder;
+
 	@Test
 	@DisplayName("Deve verificar se existe empréstimo não devolvido para o livro ")
 	public void existsBookByAndNotReturnedTest() {
@@ -51,10 +67,11 @@ public class LoanRepositoryTest {
 		
 		Loan loan = createAndPersistLoan(LocalDate.now());
 		
-		Page<Loan> result = repository.findByBookIsbnOrCustomer("123", "Fulano", PageRequest.of(0, 10));
+		Page<LoanView> result = repository.findWithArchiveByBookIsbnOrCustomer("123", "Fulano", PageRequest.of(0, 10));
 
 		assertThat(result.getContent()).hasSize(1);
-		assertThat(result.getContent()).contains(loan);
+		assertThat(result.getContent()).extracting(LoanView::getId).contains(loan.getId());
+		assertThat(result.getContent().get(0).getBookIsbn()).isEqualTo("123");
 		assertThat(result.getPageable().getPageSize()).isEqualTo(10);
 		assertThat(result.getPageable().getPageNumber()).isEqualTo(0);
 		assertThat(result.getTotalElements()).isEqualTo(1);
@@ -62,35 +79,255 @@ public class LoanRepositoryTest {
 	}
 	
 	@Test
-	@DisplayName("Deve obter empréstimos cuja data empréstimo for menor ou igual a três dias atrás e não retornados.")
-	public void findByLoansDateLessThanAndNotReturned() {
-		Loan loan = createAndPersistLoan(LocalDate.now().minusDays(5));
+	@DisplayName("Deve buscar empréstimos por cursor pelo isbn do livro ou customer")
+	public void findByBookIsbnOrCustomerAfterTest() {
+		
+		Loan loan = createAndPersistLoan(LocalDate.now());
+		
+		Slice<LoanView> result = repository.findWithArchiveByBookIsbnOrCustomerAfter(0l, "123", "Fulano", 10);
+		
+		assertThat(result.getContent()).extracting(LoanView::getId).containsExactly(loan.getId());
+		assertThat(result.hasNext()).isFalse();
+		
+		result = repository.findWithArchiveByBookIsbnOrCustomerAfter(loan.getId(), "123", "Fulano", 10);
+		
+		assertThat(result.getContent()).isEmpty();
+	}
+	
+	@Test
+	@DisplayName("Deve obter empréstimos abertos com vencimento anterior à data de referência.")
+	public void findLateLoansTest() {
+		Loan loan = createAndPersistLoan(LocalDate.now().minusDays(4));
+		createAndPersistLoan(LocalDate.now().minusDays(3), "456");
 		
-		List<Loan> result = repository.findByLoansDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
+		List<Loan> result = repository.findLateLoans(LocalDate.now());
 		
 		assertThat(result).hasSize(1).contains(loan);
+		assertThat(loan.getStatus()).isEqualTo(LoanStatus.OPEN);
 		
 	}
 	
+	@Test
+	@DisplayName("Não deve considerar atrasado um empréstimo vencido já devolvido.")
+	public void returnedLoanNotLateTest() {
+		Loan loan = createAndPersistLoan(LocalDate.now().minusDays(10));
+		repository.markReturned(Collections.singleton(loan.getId()));
+		
+		assertThat(repository.findLateLoans(LocalDate.now())).isEmpty();
+	}
+	
+	@Test
+	@DisplayName("Deve obter em blocos só os empréstimos vencidos desde a marca d'água e ainda não avisados.")
+	public void findNewlyLateLoansAfterTest() {
+		Loan loan = createAndPersistLoan(LocalDate.now().minusDays(5));
+		loan.setCustomerEmail("fulano@email.com");
+		createAndPersistLoan(LocalDate.now().minusDays(10), "456");
+		entityManager.flush();
+		LocalDate since = LocalDate.now().minusDays(3);
+		
+		List<LateLoanView> result = repository.findNewlyLateLoansAfter(0l, since, LocalDate.now(), 0, 1,
+				PageRequest.of(0, 10));
+		
+		assertThat(result).hasSize(1);
+		assertThat(result.get(0).getId()).isEqualTo(loan.getId());
+		assertThat(result.get(0).getCustomerEmail()).isEqualTo("fulano@email.com");
+		assertThat(repository.findNewlyLateLoansAfter(loan.getId(), since, LocalDate.now(), 0, 1,
+				PageRequest.of(0, 10)))
+				.isEmpty();
+		
+		repository.markLateNotified(Collections.singleton(loan.getId()), LocalDate.now());
+		assertThat(repository.findNewlyLateLoansAfter(0l, since, LocalDate.now(), 0, 1, PageRequest.of(0, 10)))
+				.isEmpty();
+	}
+	
+	@Test
+	@DisplayName("Deve obter para lembrete só os empréstimos abertos avisados até a data de corte.")
+	public void findLateLoansToRemindAfterTest() {
+		Loan reminded = createAndPersistLoan(LocalDate.now().minusDays(20));
+		Loan recent = createAndPersistLoan(LocalDate.now().minusDays(20), "456");
+		Loan returned = createAndPersistLoan(LocalDate.now().minusDays(20), "789");
+		entityManager.flush();
+		repository.markLateNotified(Collections.singleton(reminded.getId()), LocalDate.now().minusDays(8));
+		repository.markLateNotified(Collections.singleton(recent.getId()), LocalDate.now().minusDays(2));
+		repository.markLateNotified(Collections.singleton(returned.getId()), LocalDate.now().minusDays(8));
+		repository.markReturned(Collections.singleton(returned.getId()));
+		
+		List<LateLoanView> result = repository.findLateLoansToRemindAfter(0l, LocalDate.now().minusDays(7), 0, 1,
+				PageRequest.of(0, 10));
+		
+		assertThat(result).extracting(LateLoanView::getId).containsExactly(reminded.getId());
+	}
+	
 	@Test
 	@DisplayName("Deve retornar vazio quando não houver empréstimos atrasados.")
 	public void notFindByLoansDateLessThanAndNotReturned() {
 		createAndPersistLoan(LocalDate.now());
 		
-		List<Loan> result = repository.findByLoansDateLessThanAndNotReturned(LocalDate.now().minusDays(4));
+		List<Loan> result = repository.findLateLoans(LocalDate.now());
 		
 		assertThat(result).isEmpty();
 		
 	}
 	
+	@Test
+	@DisplayName("O banco deve rejeitar um segundo empréstimo aberto para o mesmo livro.")
+	public void rejectSecondOpenLoanTest() {
+		Loan loan = createAndPersistLoan(LocalDate.now());
+		
+		Loan second = Loan.builder().book(loan.getBook()).customer("Ciclano").loanDate(LocalDate.now()).build();
+		Throwable exception = catchThrowable(() -> repository.saveAndFlush(second));
+		
+		assertThat(exception).isInstanceOf(DataIntegrityViolationException.class);
+	}
+	
+	@Test
+	@DisplayName("Deve liberar o livro para novo empréstimo após a devolução.")
+	public void releaseBookOnReturnTest() {
+		Loan loan = createAndPersistLoan(LocalDate.now());
+		loan.setReturned(true);
+		repository.saveAndFlush(loan);
+		
+		assertThat(loan.getOpenBookId()).isNull();
+		
+		Loan second = Loan.builder().book(loan.getBook()).customer("Ciclano").loanDate(LocalDate.now()).build();
+		repository.saveAndFlush(second);
+		
+		assertThat(second.getOpenBookId()).isEqualTo(loan.getBook().getId());
+	}
+	
+	@Test
+	@DisplayName("A listagem de empréstimos deve usar o mesmo número de comandos SQL para qualquer tamanho de página.")
+	public void loanListingStatementCountTest() {
+		for (int i = 0; i < 20; i++) {
+			Book book = createNewBook("isbn-" + i);
+			entityManager.persist(book);
+			entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+		}
+		entityManager.flush();
+
+		assertThat(statementsFor(PageRequest.of(0, 5))).isEqualTo(2);
+		assertThat(statementsFor(PageRequest.of(0, 10))).isEqualTo(2);
+		assertThat(statementsFor(PageRequest.of(1, 10))).isEqualTo(2);
+	}
+
+	private long statementsFor(PageRequest pageRequest) {
+		entityManager.clear();
+		recorder.start();
+
+		Page<LoanView> result = repository.findWithArchiveByBookIsbnOrCustomer(null, "Fulano", pageRequest);
+		assertThat(result.getTotalElements()).isEqualTo(20);
+		assertThat(result.getContent()).allMatch(view -> view.getBookTitle() != null);
+
+		return recorder.stop().size();
+	}
+
+	@Test
+	@DisplayName("A listagem sem count deve usar um único comando SQL e indicar se há próxima página.")
+	public void loanListingSliceTest() {
+		for (int i = 0; i < 20; i++) {
+			Book book = createNewBook("isbn-" + i);
+			entityManager.persist(book);
+			entityManager.persist(Loan.builder().book(book).customer("Fulano").loanDate(LocalDate.now()).build());
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		recorder.start();
+		Slice<LoanView> first = repository.findSliceWithArchiveByBookIsbnOrCustomer(null, "Fulano",
+				PageRequest.of(0, 5));
+		assertThat(recorder.stop()).hasSize(1);
+		assertThat(first.getContent()).hasSize(5);
+		assertThat(first.hasNext()).isTrue();
+
+		Slice<LoanView> last = repository.findSliceWithArchiveByBookIsbnOrCustomer(null, "Fulano",
+				PageRequest.of(3, 5));
+		assertThat(last.getContent()).hasSize(5);
+		assertThat(last.hasNext()).isFalse();
+		assertThat(repository.countWithArchiveByBookIsbnOrCustomer("isbn-0", "Fulano")).isEqualTo(20);
+	}
+
+	@Test
+	@DisplayName("Deve devolver e reabrir um empréstimo com updates direcionados, com novo prazo ao reabrir.")
+	public void returnAndReopenTest() {
+		Loan loan = createAndPersistLoan(LocalDate.now().minusDays(30));
+		Long bookId = loan.getBook().getId();
+		entityManager.flush();
+
+		assertThat(repository.markReturned(Collections.singleton(loan.getId()))).isEqualTo(1);
+		entityManager.clear();
+		Loan returned = entityManager.find(Loan.class, loan.getId());
+		assertThat(returned.getReturned()).isTrue();
+		assertThat(returned.getOpenBookId()).isNull();
+		assertThat(repository.markReturned(Collections.singleton(loan.getId()))).isZero();
+		entityManager.clear();
+		assertThat(entityManager.find(Loan.class, loan.getId()).getVersion()).isEqualTo(returned.getVersion());
+
+		assertThat(repository.reopen(loan.getId(), LocalDate.now().plusDays(3))).isEqualTo(1);
+		entityManager.clear();
+		Loan reopened = entityManager.find(Loan.class, loan.getId());
+		assertThat(reopened.getReturned()).isFalse();
+		assertThat(reopened.getOpenBookId()).isEqualTo(bookId);
+		assertThat(reopened.getDueDate()).isEqualTo(LocalDate.now().plusDays(3));
+		assertThat(reopened.getLateNotifiedOn()).isNull();
+		assertThat(repository.findNewlyLateLoansAfter(0l, LocalDate.now(), LocalDate.now().plusDays(4), 0, 1,
+				PageRequest.of(0, 10))).extracting(LateLoanView::getId).containsExactly(loan.getId());
+		assertThat(repository.reopen(loan.getId(), LocalDate.now())).isZero();
+		assertThat(repository.reopen(-1l, LocalDate.now())).isZero();
+	}
+
+	@Test
+	@DisplayName("Deve arquivar devolvidos antigos e continuar listando-os junto com os ativos.")
+	public void archiveAndFindWithArchiveTest() {
+		LocalDate today = LocalDate.now();
+		Loan old = createAndPersistLoan(today.minusDays(400), "123");
+		Loan open = createAndPersistLoan(today.minusDays(400), "456");
+		Loan recent = createAndPersistLoan(today.minusDays(10), "789");
+		entityManager.flush();
+		repository.markReturned(Arrays.asList(old.getId(), recent.getId()));
+
+		List<Long> ids = repository.findArchivableIds(today.minusDays(365), PageRequest.of(0, 10));
+		assertThat(ids).containsExactly(old.getId());
+		assertThat(repository.archive(Arrays.asList(old.getId(), open.getId()), LocalDateTime.now())).isEqualTo(1);
+		entityManager.clear();
+
+		assertThat(entityManager.find(Loan.class, old.getId())).isNull();
+		assertThat(entityManager.find(LoanArchive.class, old.getId()).getBook().getIsbn()).isEqualTo("123");
+		assertThat(entityManager.find(Loan.class, open.getId())).isNotNull();
+
+		Page<LoanView> page = repository.findWithArchiveByBookIsbnOrCustomer(null, "Fulano", PageRequest.of(0, 2));
+		assertThat(page.getTotalElements()).isEqualTo(3);
+		assertThat(page.getContent()).extracting(LoanView::getId).containsExactly(old.getId(), open.getId());
+		assertThat(page.getContent().get(0).getReturned()).isTrue();
+		assertThat(page.getContent().get(0).getBookIsbn()).isEqualTo("123");
+
+		Page<LoanView> sorted = repository.findWithArchiveByBookIsbnOrCustomer("123", null,
+				PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "loanDate")));
+		assertThat(sorted.getContent()).extracting(LoanView::getId).containsExactly(old.getId());
+
+		Page<LoanView> byBook = repository.findWithArchiveByBookId(old.getBook().getId(), PageRequest.of(0, 10));
+		assertThat(byBook.getContent()).extracting(LoanView::getId).containsExactly(old.getId());
+
+		Slice<LoanView> slice = repository.findWithArchiveByBookIsbnOrCustomerAfter(0l, null, "Fulano", 1);
+		assertThat(slice.getContent()).extracting(LoanView::getId).containsExactly(old.getId());
+		assertThat(slice.hasNext()).isTrue();
+		slice = repository.findWithArchiveByBookIsbnOrCustomerAfter(open.getId(), null, "Fulano", 1);
+		assertThat(slice.getContent()).extracting(LoanView::getId).containsExactly(recent.getId());
+		assertThat(slice.hasNext()).isFalse();
+	}
+
 	public Loan createAndPersistLoan(LocalDate loanDate) {
-		Book book = createNewBook("123");
+		return createAndPersistLoan(loanDate, "123");
+	}
+	
+	public Loan createAndPersistLoan(LocalDate loanDate, String isbn) {
+		Book book = createNewBook(isbn);
 		entityManager.persist(book); 
 		
 		Loan loan = Loan.builder()
 				.book(book)
 				.customer("Fulano")
 				.loanDate(loanDate)
+				.dueDate(loanDate.plusDays(3))
 				.build();
 		entityManager.persist(loan);
 		
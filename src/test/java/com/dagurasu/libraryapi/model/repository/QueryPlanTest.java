@@ -0,0 +1,160 @@
+package com.dagurasu.libraryapi.model.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.dagurasu.libraryapi.api.model.entity.Book;
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.repository.BookRepository;
+import com.dagurasu.libraryapi.api.model.repository.LoanRepository;
+
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+/**
+ * Executa cada consulta do BookRepository e do LoanRepository, grava o SQL
+ * gerado com os parâmetros e roda EXPLAIN sobre ele no mesmo H2 do esquema
+ * das migrações. Falha se algum plano voltar a ser uma varredura completa.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(SqlRecorder.class)
+public class QueryPlanTest {
+
+	private static final String FULL_SCAN = ".tableScan";
+
+	@Autowired
+	TestEntityManager entityManager;
+
+	@Autowired
+	BookRepository books;
+
+	@Autowired
+	LoanRepository loans;
+
+	@Autowired
+	SqlRecorder recorder;
+
+	@Autowired
+	DataSource dataSource;
+
+	Book book;
+	Loan open;
+	Loan returned;
+
+	@BeforeEach
+	public void seed() {
+		LocalDate today = LocalDate.now();
+		book = entityManager.persist(Book.builder().title("Plano").author("Fulano").isbn("plan-1").build());
+		Book other = entityManager.persist(Book.builder().title("Outro").author("Fulano").isbn("plan-2").build());
+		open = entityManager.persist(Loan.builder().book(book).customer("Fulano").customerEmail("fulano@email.com")
+				.loanDate(today.minusDays(10)).dueDate(today.minusDays(7)).build());
+		returned = entityManager.persist(Loan.builder().book(other).customer("Fulano").returned(true)
+				.loanDate(today.minusDays(400)).dueDate(today.minusDays(397)).build());
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	@Test
+	@DisplayName("As consultas do BookRepository devem usar índices.")
+	public void bookRepositoryPlansTest() {
+		assertIndexed("existsByIsbn", () -> books.existsByIsbn("plan-1"));
+		assertIndexed("findByIsbn", () -> books.findByIsbn("plan-1"));
+		assertIndexed("findByIsbnIn", () -> books.findByIsbnIn(Arrays.asList("plan-1", "plan-2")));
+		assertIndexed("findVersionById", () -> books.findVersionById(book.getId()));
+		assertIndexed("patch", () -> books.patch(book.getId(), null, "Novo", null));
+		assertIndexed("findByPatternsAfter", () -> books.findByPatternsAfter(0l, "%pla%", null, null,
+				PageRequest.of(0, 10, Sort.by("id"))));
+	}
+
+	@Test
+	@DisplayName("As consultas do LoanRepository devem usar índices.")
+	public void loanRepositoryPlansTest() {
+		LocalDate today = LocalDate.now();
+		List<Long> ids = Arrays.asList(open.getId(), returned.getId());
+
+		assertIndexed("existsByBookAndNotReturned", () -> loans.existsByBookAndNotReturned(book));
+		assertIndexed("findOpenBookIds", () -> loans.findOpenBookIds(Collections.singleton(book.getId())));
+		assertIndexed("findAllWithBookByIdIn", () -> loans.findAllWithBookByIdIn(ids));
+		assertIndexed("findLateLoans", () -> loans.findLateLoans(today));
+		assertIndexed("findNewlyLateLoansAfter", () -> loans.findNewlyLateLoansAfter(0l, today.minusDays(30), today,
+				0, 1, PageRequest.of(0, 10)));
+		assertIndexed("findLateLoansToRemindAfter", () -> loans.findLateLoansToRemindAfter(0l, today.minusDays(7),
+				0, 1, PageRequest.of(0, 10)));
+		assertIndexed("markLateNotified", () -> loans.markLateNotified(ids, today));
+		assertIndexed("findArchivableIds", () -> loans.findArchivableIds(today.minusDays(365), PageRequest.of(0, 10)));
+		assertIndexed("findWithArchiveByBookIsbnOrCustomer", () -> loans.findWithArchiveByBookIsbnOrCustomer("plan-1",
+				"Fulano", PageRequest.of(0, 10, Sort.by("loanDate"))));
+		assertIndexed("findSliceWithArchiveByBookIsbnOrCustomer", () -> loans
+				.findSliceWithArchiveByBookIsbnOrCustomer("plan-1", "Fulano", PageRequest.of(0, 10)));
+		assertIndexed("countWithArchiveByBookIsbnOrCustomer",
+				() -> loans.countWithArchiveByBookIsbnOrCustomer("plan-1", "Fulano"));
+		assertIndexed("findWithArchiveByBookIsbnOrCustomerAfter",
+				() -> loans.findWithArchiveByBookIsbnOrCustomerAfter(0l, "plan-1", "Fulano", 10));
+		assertIndexed("findWithArchiveByBookId", () -> loans.findWithArchiveByBookId(book.getId(),
+				PageRequest.of(0, 10)));
+		assertIndexed("archive", () -> loans.archive(Collections.singleton(returned.getId()), LocalDateTime.now()));
+		assertIndexed("markReturned", () -> loans.markReturned(Collections.singleton(open.getId())));
+		assertIndexed("reopen", () -> loans.reopen(open.getId(), today.plusDays(3)));
+	}
+
+	private void assertIndexed(String query, Runnable call) {
+		recorder.start();
+		call.run();
+		List<QueryInfo> executed = recorder.stop();
+
+		assertThat(executed).as(query).isNotEmpty();
+		for (QueryInfo info : executed) {
+			String plan = explain(info);
+			assertThat(plan).as("%s%n%s", query, plan).doesNotContain(FULL_SCAN);
+		}
+	}
+
+	/*
+	 * Os parâmetros da primeira execução são reaplicados no EXPLAIN, pela mesma
+	 * conexão da transação do teste.
+	 */
+	private String explain(QueryInfo info) {
+		Connection connection = DataSourceUtils.getConnection(dataSource);
+		try (PreparedStatement statement = connection.prepareStatement("explain " + info.getQuery())) {
+			if (!info.getParametersList().isEmpty()) {
+				for (ParameterSetOperation operation : info.getParametersList().get(0)) {
+					operation.getMethod().invoke(statement, operation.getArgs());
+				}
+			}
+			StringBuilder plan = new StringBuilder();
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					plan.append(rs.getString(1)).append('\n');
+				}
+			}
+			return plan.toString();
+		} catch (Exception e) {
+			throw new IllegalStateException("EXPLAIN failed for " + info.getQuery(), e);
+		} finally {
+			DataSourceUtils.releaseConnection(connection, dataSource);
+		}
+	}
+}
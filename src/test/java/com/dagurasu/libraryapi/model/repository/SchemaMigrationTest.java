@@ -0,0 +1,77 @@
+package com.dagurasu.libraryapi.model.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.dagurasu.libraryapi.api.model.entity.Loan;
+import com.dagurasu.libraryapi.api.model.repository.LoanRepository;
+
+/*
+ * Banco criado pelo ddl-auto antes das migrações, com dados: a aplicação sobe
+ * sobre ele pelo baseline na versão 1 e o Hibernate valida o esquema migrado.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(properties = { "spring.datasource.url=" + SchemaMigrationTest.URL,
+		"application.loans.period-days=5" })
+public class SchemaMigrationTest {
+
+	static final String URL = "jdbc:h2:mem:pre-migrations;DB_CLOSE_DELAY=-1";
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	LoanRepository loanRepository;
+
+	@BeforeAll
+	public static void createLegacySchema() throws SQLException {
+		try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+				Statement statement = connection.createStatement()) {
+			statement.execute("create table book (id bigint generated by default as identity primary key, "
+					+ "author varchar(255), isbn varchar(255), title varchar(255))");
+			statement.execute("create table loan (id bigint generated by default as identity primary key, "
+					+ "customer varchar(100), customer_email varchar(255), loan_date date, returned boolean, "
+					+ "id_book bigint, constraint fkdb7v6vfg1ey5c2vqjd1e2syu9 foreign key (id_book) references book)");
+			statement.execute("insert into book (id, title, author, isbn) values (1, 'Livro', 'Autor', '123'), "
+					+ "(2, 'Outro', 'Autor', '456')");
+			statement.execute("insert into loan (id, customer, loan_date, returned, id_book) values "
+					+ "(1, 'Fulano', '2020-01-10', true, 1), (2, 'Ciclano', '2020-02-10', false, 1), "
+					+ "(3, 'Beltrano', '2020-03-10', null, 2)");
+		}
+	}
+
+	@Test
+	@DisplayName("Deve migrar um banco anterior às migrações, preenchendo as colunas novas a partir dos dados.")
+	public void migratesLegacyDatabaseTest() {
+		List<Map<String, Object>> loans = jdbcTemplate.queryForList(
+				"select id, status, due_date, open_book_id, version from loan order by id");
+
+		assertThat(loans).extracting(row -> row.get("STATUS")).containsExactly("RETURNED", "OPEN", "OPEN");
+		assertThat(loans).extracting(row -> row.get("OPEN_BOOK_ID")).containsExactly(null, 1l, 2l);
+		assertThat(loans).extracting(row -> row.get("VERSION")).containsOnly(0l);
+		assertThat(jdbcTemplate.queryForList("select version from book", Long.class)).containsOnly(0l);
+
+		Loan open = loanRepository.findById(2l).get();
+		assertThat(open.getDueDate()).isEqualTo(LocalDate.of(2020, 2, 15));
+		assertThat(loanRepository.findLateLoans(LocalDate.of(2020, 2, 16))).extracting(Loan::getId)
+				.containsExactly(2l);
+		assertThat(jdbcTemplate.queryForList("select concat(\"version\", ':', \"type\") from \"flyway_schema_history\" "
+				+ "where \"version\" is not null order by \"installed_rank\"", String.class))
+				.containsExactly("1:BASELINE", "2:SQL", "3:SQL", "4:SQL", "5:SQL", "6:SQL");
+	}
+}
@@ -0,0 +1,47 @@
+package com.dagurasu.libraryapi.model.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+/**
+ * Envolve o DataSource do contexto de teste com o datasource-proxy e guarda os
+ * comandos executados, com os parâmetros, entre start e stop. Registrado com
+ * {@code @Import(SqlRecorder.class)}.
+ */
+public class SqlRecorder implements BeanPostProcessor {
+
+	private final List<QueryInfo> queries = new CopyOnWriteArrayList<>();
+	private volatile boolean recording;
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof DataSource) {
+			return ProxyDataSourceBuilder.create(beanName, (DataSource) bean)
+					.afterQuery((execInfo, queryInfos) -> {
+						if (recording) {
+							queries.addAll(queryInfos);
+						}
+					})
+					.build();
+		}
+		return bean;
+	}
+
+	public void start() {
+		queries.clear();
+		recording = true;
+	}
+
+	public List<QueryInfo> stop() {
+		recording = false;
+		return new ArrayList<>(queries);
+	}
+}
@@ -0,0 +1,55 @@
+package com.dagurasu.libraryapi.performance;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Mede os bytes alocados pela thread do Tomcat durante cada requisição e
+ * acumula a média pelo padrão da rota, como o SqlStatsFilter. Só conta o
+ * lado do servidor: o cliente HTTP do teste fica de fora.
+ */
+class AllocationFilter extends OncePerRequestFilter {
+
+	private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private final ConcurrentMap<String, LongAdder[]> allocations = new ConcurrentHashMap<>();
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			long allocated = threads.getThreadAllocatedBytes(thread) - before;
+			Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+			LongAdder[] total = allocations.computeIfAbsent(request.getMethod() + " " + pattern,
+					k -> new LongAdder[] { new LongAdder(), new LongAdder() });
+			total[0].increment();
+			total[1].add(allocated);
+		}
+	}
+
+	/* media de bytes por requisicao desde o ultimo reset, ou -1 sem medicao */
+	double averageBytes(String endpoint) {
+		LongAdder[] total = allocations.get(endpoint);
+		return total == null || total[0].sum() == 0 ? -1 : total[1].sum() / (double) total[0].sum();
+	}
+
+	void reset() {
+		allocations.clear();
+	}
+}
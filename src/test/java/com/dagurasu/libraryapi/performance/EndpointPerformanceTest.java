@@ -0,0 +1,454 @@
+package com.dagurasu.libraryapi.performance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import com.dagurasu.libraryapi.api.dto.BookDTO;
+import com.dagurasu.libraryapi.api.dto.LoanDTO;
+import com.dagurasu.libraryapi.api.dto.ReturnedLoanDTO;
+import com.dagurasu.libraryapi.api.service.dataset.DatasetGenerator;
+import com.dagurasu.libraryapi.api.service.dataset.DatasetSpec;
+import com.dagurasu.libraryapi.config.sql.SqlStatsEndpoint;
+import com.dagurasu.libraryapi.config.sql.SqlStatsEndpoint.EndpointSqlStats;
+
+/**
+ * Suíte de regressão de desempenho: sobe a aplicação em uma porta real sobre
+ * um H2 populado pelo DatasetGenerator, dispara cada endpoint em paralelo e falha quando o
+ * p99 da latência, os comandos SQL ou a alocação por requisição passam dos
+ * orçamentos de performance/budgets.properties. O relatório fica em
+ * target/performance/report.properties. Um mapeamento da API sem cenário
+ * também falha a suíte.
+ *
+ * Fica fora do build normal; roda com ./mvnw -Pperformance test, e o volume
+ * e a carga podem ser ajustados por -Dperformance.books, .loans, .warmup,
+ * .requests e .concurrency.
+ */
+@Tag("performance")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:performance;DB_CLOSE_DELAY=-1",
+		"spring.boot.admin.client.enabled=false",
+		"application.outbox.relay.delay-ms=3600000",
+		"logging.level.root=WARN",
+		"logging.file.name=" })
+@ActiveProfiles("test")
+public class EndpointPerformanceTest {
+
+	static final int BOOKS = Integer.getInteger("performance.books", 20_000);
+	static final int LOANS = Integer.getInteger("performance.loans", 100_000);
+	static final int CUSTOMERS = Math.max(1, LOANS / 20);
+	static final int WARMUP = Integer.getInteger("performance.warmup", 500);
+	static final int REQUESTS = Integer.getInteger("performance.requests", 2_000);
+	static final int CONCURRENCY = Integer.getInteger("performance.concurrency", 8);
+	static final int BATCH = 10;
+
+	static final PerformanceReport report = new PerformanceReport();
+
+	static boolean seeded;
+	static long firstBookId;
+	static List<String> freeIsbns = Collections.emptyList();
+	static List<Long> fixture = Collections.emptyList();
+
+	@Autowired
+	TestRestTemplate rest;
+
+	@Autowired
+	JdbcTemplate jdbc;
+
+	@Autowired
+	DatasetGenerator generator;
+
+	@Autowired
+	SqlStatsEndpoint sqlStats;
+
+	@Autowired
+	AllocationFilter allocations;
+
+	@Autowired
+	@Qualifier("requestMappingHandlerMapping")
+	RequestMappingHandlerMapping mappings;
+
+	@TestConfiguration
+	static class AllocationConfig {
+
+		@Bean
+		AllocationFilter allocationFilter() {
+			return new AllocationFilter();
+		}
+
+		@Bean
+		FilterRegistrationBean<AllocationFilter> allocationFilterRegistration(AllocationFilter filter) {
+			FilterRegistrationBean<AllocationFilter> registration = new FilterRegistrationBean<>(filter);
+			registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+			return registration;
+		}
+	}
+
+	/*
+	 * Cerca de 20 emprestimos por cliente e 5 por livro, com a concentracao e os
+	 * atrasos padrao do gerador; o cenario de criacao usa livros sem emprestimo
+	 * aberto, um por requisicao. Os cenarios de escrita que precisam de linhas
+	 * proprias as gravam em prepare, depois dos cenarios de leitura.
+	 */
+	@BeforeEach
+	public void seed() {
+		if (seeded) {
+			return;
+		}
+		// o pool padrao do HttpClient abre 2 conexoes por host e enfileiraria as threads
+		rest.getRestTemplate().setRequestFactory(new HttpComponentsClientHttpRequestFactory(
+				HttpClients.custom().setMaxConnPerRoute(CONCURRENCY).setMaxConnTotal(CONCURRENCY).build()));
+		DatasetGenerator.Result dataset = generator.generate(
+				DatasetSpec.builder().books(BOOKS).loans(LOANS).customers(CUSTOMERS).build());
+		firstBookId = dataset.getFirstBookId();
+		freeIsbns = jdbc.queryForList("select isbn from book b where not exists "
+				+ "(select 1 from loan l where l.open_book_id = b.id) order by b.id desc limit ?", String.class,
+				WARMUP + REQUESTS);
+		seeded = true;
+	}
+
+	@AfterAll
+	public static void writeReport() {
+		report.write(Paths.get(System.getProperty("performance.report", "target/performance/report.properties")),
+				String.format("books=%d loans=%d warmup=%d requests=%d concurrency=%d", BOOKS, LOANS, WARMUP,
+						REQUESTS, CONCURRENCY));
+	}
+
+	@ParameterizedTest(name = "{0}")
+	@EnumSource(Scenario.class)
+	@DisplayName("O endpoint deve caber nos orçamentos de latência, comandos SQL e alocação.")
+	public void endpointBudgetTest(Scenario scenario) throws Exception {
+		fixture = scenario.prepare(jdbc, WARMUP + REQUESTS);
+		drive(scenario, 0, WARMUP, new LongAdder());
+		sqlStats.reset();
+		allocations.reset();
+
+		LongAdder errors = new LongAdder();
+		long[] latencies = drive(scenario, WARMUP, REQUESTS, errors);
+
+		EndpointSqlStats sql = sqlStats.stats().get(scenario.endpoint);
+		double allocated = allocations.averageBytes(scenario.endpoint);
+		List<String> violations = report.add(new PerformanceReport.Result(scenario.key,
+				REQUESTS, errors.sum(),
+				PerformanceReport.percentileMs(latencies, 50),
+				PerformanceReport.percentileMs(latencies, 95),
+				PerformanceReport.percentileMs(latencies, 99),
+				sql == null ? -1 : sql.getMaxStatements(),
+				sql == null ? -1 : sql.getAvgStatements(),
+				allocated < 0 ? -1 : allocated / 1024));
+
+		assertThat(sql).as("sqlstats of %s", scenario.endpoint).isNotNull();
+		assertThat(violations).isEmpty();
+	}
+
+	@Test
+	@DisplayName("Todo mapeamento da API deve ter um cenário na suíte.")
+	public void everyMappingHasScenarioTest() {
+		Set<String> mapped = new TreeSet<>();
+		mappings.getHandlerMethods().keySet().forEach(info -> mapped.addAll(mappings(info)));
+		mapped.removeIf(mapping -> !mapping.contains(" /api/"));
+
+		assertThat(mapped).contains("GET /api/books?after", "PATCH /api/loans/batch");
+		assertThat(Arrays.stream(Scenario.values()).map(Scenario::mapping).collect(Collectors.toSet()))
+				.containsAll(mapped);
+	}
+
+	/* "METODO padrao", com as condicoes de parametro depois de "?" */
+	private static List<String> mappings(RequestMappingInfo info) {
+		Set<String> params = new TreeSet<>();
+		info.getParamsCondition().getExpressions().forEach(expression -> params.add(expression.toString()));
+		String suffix = params.isEmpty() ? "" : "?" + String.join("&", params);
+		List<String> result = new ArrayList<>();
+		info.getMethodsCondition().getMethods().forEach(method -> info.getPatternValues()
+				.forEach(pattern -> result.add(method + " " + pattern + suffix)));
+		return result;
+	}
+
+	/* dispara count requisicoes com CONCURRENCY threads e devolve a latencia de cada uma */
+	private long[] drive(Scenario scenario, int from, int count, LongAdder errors) throws InterruptedException {
+		long[] latencies = new long[count];
+		AtomicInteger next = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(CONCURRENCY);
+		for (int t = 0; t < CONCURRENCY; t++) {
+			pool.execute(() -> {
+				for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+					long start = System.nanoTime();
+					try {
+						if (!scenario.call(rest, from + i).getStatusCode().is2xxSuccessful()) {
+							errors.increment();
+						}
+					} catch (RestClientException e) {
+						errors.increment();
+					}
+					latencies[i] = System.nanoTime() - start;
+				}
+			});
+		}
+		pool.shutdown();
+		assertThat(pool.awaitTermination(10, TimeUnit.MINUTES)).as("%s finished", scenario.key).isTrue();
+		return latencies;
+	}
+
+	/* ids espalhados pela tabela, e sempre os mesmos para o mesmo indice */
+	private static long bookId(int i) {
+		return firstBookId + (i * 7919L) % BOOKS;
+	}
+
+	/* mesmo formato dos cursores devolvidos pela API */
+	private static String cursor(long id) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(("id:" + id).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/* grava count livros sem emprestimos, com isbn prefix + n, e devolve os ids na ordem de n */
+	private static List<Long> insertBooks(JdbcTemplate jdbc, String prefix, int count) {
+		jdbc.batchUpdate("insert into book (title, author, isbn, version) values (?, ?, ?, 0)",
+				IntStream.range(0, count).mapToObj(n -> new Object[] { "Livro " + prefix + n,
+						DatasetGenerator.author(1 + n % 100), prefix + n }).collect(Collectors.toList()));
+		return jdbc.queryForList("select id from book where isbn like ? order by id", Long.class, prefix + "%");
+	}
+
+	/* um emprestimo aberto para cada livro novo; devolve os ids dos emprestimos */
+	private static List<Long> insertOpenLoans(JdbcTemplate jdbc, String prefix, int count) {
+		List<Long> books = insertBooks(jdbc, prefix, count);
+		jdbc.batchUpdate("insert into loan (customer, customer_email, id_book, loan_date, due_date, returned, "
+				+ "status, open_book_id, version) values (?, ?, ?, current_date, current_date + 7, false, 'OPEN', ?, 0)",
+				IntStream.range(0, count).mapToObj(n -> new Object[] { DatasetGenerator.customer(1 + n % CUSTOMERS),
+						"customer@mail.com", books.get(n), books.get(n) }).collect(Collectors.toList()));
+		return jdbc.queryForList("select l.id from loan l join book b on b.id = l.id_book where b.isbn like ? "
+				+ "order by l.id", Long.class, prefix + "%");
+	}
+
+	private static <T> HttpEntity<T> json(T body) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		return new HttpEntity<>(body, headers);
+	}
+
+	enum Scenario {
+
+		BOOK_GET("book.get", "GET /api/books/{id}") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				return rest.getForEntity("/api/books/{id}", String.class, bookId(i));
+			}
+		},
+		BOOK_SEARCH("book.search", "GET /api/books") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				return rest.getForEntity("/api/books?author={author}&size=20", String.class,
+						DatasetGenerator.author(1 + i % 100));
+			}
+		},
+		BOOK_SEARCH_CURSOR("book.search.cursor", "GET /api/books", "after") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				return rest.getForEntity("/api/books?author={author}&after={after}&size=20", String.class,
+						DatasetGenerator.author(1 + i % 100), cursor(bookId(i)));
+			}
+		},
+		BOOK_LOANS("book.loans", "GET /api/books/{id}/loans") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				return rest.getForEntity("/api/books/{id}/loans?size=20", String.class, bookId(i));
+			}
+		},
+		LOAN_SEARCH("loan.search", "GET /api/loans") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				return rest.getForEntity("/api/loans?customer={customer}&size=20", String.class,
+						DatasetGenerator.customer(1 + i % CUSTOMERS));
+			}
+		},
+		LOAN_SEARCH_WITHOUT_COUNT("loan.search.none", "GET /api/loans") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				return rest.getForEntity("/api/loans?customer={customer}&size=20&count=none", String.class,
+						DatasetGenerator.customer(1 + i % CUSTOMERS));
+			}
+		},
+		LOAN_SEARCH_CURSOR("loan.search.cursor", "GET /api/loans", "after") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				return rest.getForEntity("/api/loans?customer={customer}&after={after}&size=20", String.class,
+						DatasetGenerator.customer(1 + i % CUSTOMERS), cursor(0));
+			}
+		},
+		/* daqui em diante os cenarios escrevem; cada requisicao usa linhas diferentes */
+		BOOK_CREATE("book.create", "POST /api/books") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				BookDTO dto = BookDTO.builder().title("Livro novo " + i).author(DatasetGenerator.author(1 + i % 100))
+						.isbn("perf-create-" + i).build();
+				return rest.postForEntity("/api/books", dto, String.class);
+			}
+		},
+		BOOK_IMPORT("book.import", "POST /api/books/import") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				StringBuilder body = new StringBuilder();
+				for (int n = i * BATCH; n < (i + 1) * BATCH; n++) {
+					body.append("{\"title\":\"Livro importado ").append(n).append("\",\"author\":\"")
+							.append(DatasetGenerator.author(1 + n % 100)).append("\",\"isbn\":\"perf-import-")
+							.append(n).append("\"}\n");
+				}
+				HttpHeaders headers = new HttpHeaders();
+				headers.setContentType(MediaType.APPLICATION_NDJSON);
+				return rest.postForEntity("/api/books/import", new HttpEntity<>(body.toString(), headers),
+						String.class);
+			}
+		},
+		BOOK_UPDATE("book.update", "PUT /api/books/{id}") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				BookDTO dto = BookDTO.builder().title("Livro revisado " + i).author(DatasetGenerator.author(1 + i % 100))
+						.isbn("ignorado").build();
+				return rest.exchange("/api/books/{id}", HttpMethod.PUT, json(dto), String.class, bookId(i));
+			}
+		},
+		BOOK_PATCH("book.patch", "PATCH /api/books/{id}") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				BookDTO dto = BookDTO.builder().title("Livro corrigido " + i).build();
+				return rest.exchange("/api/books/{id}", HttpMethod.PATCH, json(dto), String.class, bookId(i));
+			}
+		},
+		BOOK_DELETE("book.delete", "DELETE /api/books/{id}") {
+			@Override
+			List<Long> prepare(JdbcTemplate jdbc, int count) {
+				return insertBooks(jdbc, "perf-delete-", count);
+			}
+
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				return rest.exchange("/api/books/{id}", HttpMethod.DELETE, null, String.class, fixture.get(i));
+			}
+		},
+		/* cada requisicao empresta um livro diferente, todos sem emprestimo aberto */
+		LOAN_CREATE("loan.create", "POST /api/loans") {
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				LoanDTO dto = LoanDTO.builder().isbn(freeIsbns.get(i)).customer(DatasetGenerator.customer(1 + i % CUSTOMERS))
+						.email("customer@mail.com").build();
+				return rest.postForEntity("/api/loans", dto, String.class);
+			}
+		},
+		LOAN_RETURN("loan.return", "PATCH /api/loans/{id}") {
+			@Override
+			List<Long> prepare(JdbcTemplate jdbc, int count) {
+				return insertOpenLoans(jdbc, "perf-return-", count);
+			}
+
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				return rest.exchange("/api/loans/{id}", HttpMethod.PATCH, json(new ReturnedLoanDTO(true)), String.class,
+						fixture.get(i));
+			}
+		},
+		/* BATCH livros sem emprestimo por requisicao */
+		LOAN_BATCH_CREATE("loan.batch.create", "POST /api/loans/batch") {
+			@Override
+			List<Long> prepare(JdbcTemplate jdbc, int count) {
+				insertBooks(jdbc, "perf-batch-", count * BATCH);
+				return Collections.emptyList();
+			}
+
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				List<LoanDTO> dtos = new ArrayList<>(BATCH);
+				for (int n = i * BATCH; n < (i + 1) * BATCH; n++) {
+					dtos.add(LoanDTO.builder().isbn("perf-batch-" + n).customer(DatasetGenerator.customer(1 + n % CUSTOMERS))
+							.email("customer@mail.com").build());
+				}
+				return rest.postForEntity("/api/loans/batch", dtos, String.class);
+			}
+		},
+		/* BATCH emprestimos abertos por requisicao */
+		LOAN_BATCH_RETURN("loan.batch.return", "PATCH /api/loans/batch") {
+			@Override
+			List<Long> prepare(JdbcTemplate jdbc, int count) {
+				return insertOpenLoans(jdbc, "perf-batch-return-", count * BATCH);
+			}
+
+			@Override
+			ResponseEntity<String> call(TestRestTemplate rest, int i) {
+				return rest.exchange("/api/loans/batch", HttpMethod.PATCH,
+						json(fixture.subList(i * BATCH, (i + 1) * BATCH)), String.class);
+			}
+		};
+
+		final String key;
+		final String endpoint;
+		final String params;
+
+		Scenario(String key, String endpoint) {
+			this(key, endpoint, "");
+		}
+
+		/* params distingue mapeamentos com o mesmo padrao, como a paginacao por cursor */
+		Scenario(String key, String endpoint, String params) {
+			this.key = key;
+			this.endpoint = endpoint;
+			this.params = params;
+		}
+
+		String mapping() {
+			return params.isEmpty() ? endpoint : endpoint + "?" + params;
+		}
+
+		/* linhas proprias do cenario, gravadas antes do aquecimento; o resultado fica em fixture */
+		List<Long> prepare(JdbcTemplate jdbc, int count) {
+			return Collections.emptyList();
+		}
+
+		abstract ResponseEntity<String> call(TestRestTemplate rest, int i);
+
+		@Override
+		public String toString() {
+			return key;
+		}
+	}
+}
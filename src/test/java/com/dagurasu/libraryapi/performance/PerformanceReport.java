@@ -0,0 +1,126 @@
+package com.dagurasu.libraryapi.performance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Value;
+
+/**
+ * Resultados dos cenários de desempenho, conferidos contra os orçamentos de
+ * performance/budgets.properties e gravados em um relatório ordenado e sem
+ * data, com as mesmas chaves dos orçamentos, para ser comparado com diff
+ * entre commits.
+ */
+class PerformanceReport {
+
+	static final String BUDGETS = "performance/budgets.properties";
+
+	static final String P99_MS = "p99-ms";
+	static final String STATEMENTS = "statements";
+	static final String ALLOCATED_KB = "allocated-kb";
+
+	private final Properties budgets = new Properties();
+	private final Map<String, Result> results = new TreeMap<>();
+
+	PerformanceReport() {
+		try (InputStream in = PerformanceReport.class.getClassLoader().getResourceAsStream(BUDGETS)) {
+			if (in == null) {
+				throw new IllegalStateException(BUDGETS + " not found in the test classpath");
+			}
+			budgets.load(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/* devolve as violacoes do cenario; cenario sem orcamento tambem e violacao */
+	synchronized List<String> add(Result result) {
+		results.put(result.getScenario(), result);
+
+		List<String> violations = new ArrayList<>();
+		if (result.getErrors() > 0) {
+			violations.add(String.format("%s: %d of %d requests failed", result.getScenario(), result.getErrors(),
+					result.getRequests()));
+		}
+		check(violations, result.getScenario(), P99_MS, result.getP99Ms());
+		check(violations, result.getScenario(), STATEMENTS, result.getMaxStatements());
+		check(violations, result.getScenario(), ALLOCATED_KB, result.getAllocatedKb());
+		return violations;
+	}
+
+	private void check(List<String> violations, String scenario, String metric, double value) {
+		String budget = budgets.getProperty(scenario + "." + metric);
+		if (budget == null) {
+			violations.add(String.format("%s: no %s budget in %s", scenario, metric, BUDGETS));
+		} else if (value > Double.parseDouble(budget.trim())) {
+			violations.add(String.format(Locale.ROOT, "%s: %s %.1f exceeds budget %s", scenario, metric, value,
+					budget.trim()));
+		}
+	}
+
+	synchronized void write(Path file, String header) {
+		List<String> lines = new ArrayList<>();
+		lines.add("# " + header);
+		results.values().forEach(result -> {
+			String scenario = result.getScenario();
+			lines.add(line(scenario, "requests", result.getRequests()));
+			lines.add(line(scenario, "errors", result.getErrors()));
+			lines.add(line(scenario, "p50-ms", result.getP50Ms()));
+			lines.add(line(scenario, "p95-ms", result.getP95Ms()));
+			lines.add(line(scenario, P99_MS, result.getP99Ms()));
+			lines.add(line(scenario, STATEMENTS, result.getMaxStatements()));
+			lines.add(line(scenario, "statements-avg", result.getAvgStatements()));
+			lines.add(line(scenario, ALLOCATED_KB, result.getAllocatedKb()));
+		});
+		try {
+			Files.createDirectories(file.getParent());
+			Files.write(file, lines, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String line(String scenario, String metric, long value) {
+		return scenario + "." + metric + "=" + value;
+	}
+
+	private static String line(String scenario, String metric, double value) {
+		return String.format(Locale.ROOT, "%s.%s=%.1f", scenario, metric, value);
+	}
+
+	/* percentil pelo metodo nearest-rank sobre as latencias em nanos */
+	static double percentileMs(long[] nanos, double percentile) {
+		if (nanos.length == 0) {
+			return 0;
+		}
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	@Value
+	static class Result {
+		String scenario;
+		long requests;
+		long errors;
+		double p50Ms;
+		double p95Ms;
+		double p99Ms;
+		long maxStatements;
+		double avgStatements;
+		double allocatedKb;
+	}
+}